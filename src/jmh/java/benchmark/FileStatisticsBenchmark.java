@@ -0,0 +1,69 @@
+package benchmark;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiTreeUtil;
+import data.MethodStatistics;
+import org.openjdk.jmh.annotations.*;
+import service.FileStatistics;
+import service.FileStatistics.FileStatisticsBuilder;
+import view.JavaRecursiveMethodVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation of already computed method statistics into a FileStatistics object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileStatisticsBenchmark {
+
+    /**
+     * Methods in the generated class.
+     */
+    @Param({"100", "1000"})
+    public int noMethods;
+
+    private final ProjectFixture fixture = new ProjectFixture();
+    private List<MethodStatistics> methodStatistics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture.setUp();
+        PsiFile psiFile = ReadAction.compute(() -> PsiManager.getInstance(fixture.getProject()).findFile(
+                fixture.addFiles(1, i -> "corpus/Generated.java", i -> JavaCorpus.classText("Generated", noMethods)).get(0)));
+        methodStatistics = ReadAction.compute(() -> {
+            List<MethodStatistics> statistics = new ArrayList<>();
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class)) {
+                MethodStatistics methodStatistic = new MethodStatistics(method);
+                method.accept(new JavaRecursiveMethodVisitor(methodStatistic));
+                statistics.add(methodStatistic);
+            }
+            return statistics;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public FileStatistics addMethods() {
+        return ReadAction.compute(() -> {
+            FileStatisticsBuilder builder = new FileStatisticsBuilder();
+            for (MethodStatistics statistics : methodStatistics) {
+                builder.addMethod(statistics);
+            }
+            return builder.calculateAverageComplexity().build();
+        });
+    }
+}
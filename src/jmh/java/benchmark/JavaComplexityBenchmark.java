@@ -0,0 +1,99 @@
+package benchmark;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiTreeUtil;
+import data.MethodStatistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import view.JavaRecursiveMethodVisitor;
+import view.LightMethodComplexity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cyclomatic complexity computation of every method of a generated class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JavaComplexityBenchmark {
+
+    /**
+     * Number of psi nodes visited, reported as nodes per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    /**
+     * Methods in the generated class, 834 methods make a class of about 20k lines.
+     */
+    @Param({"100", "834"})
+    public int noMethods;
+
+    private final ProjectFixture fixture = new ProjectFixture();
+    private List<PsiMethod> methods;
+    private long methodNodes;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture.setUp();
+        text = JavaCorpus.classText("Generated", noMethods);
+        PsiFile psiFile = ReadAction.compute(() -> PsiManager.getInstance(fixture.getProject()).findFile(
+                fixture.addFiles(1, i -> "corpus/Generated.java", i -> text).get(0)));
+        methods = ReadAction.compute(() -> {
+            Collection<PsiMethod> found = PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class);
+            return new ArrayList<>(found);
+        });
+        methodNodes = ReadAction.compute(() -> {
+            long count = 0;
+            for (PsiMethod method : methods) {
+                count += PsiTreeUtil.findChildrenOfType(method, PsiElement.class).size() + 1;
+            }
+            return count;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    /**
+     * Throughput only, as auxiliary counters are not reported for sampled time.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void visitMethods(Nodes nodes, Blackhole blackhole) {
+        ReadAction.run(() -> {
+            for (PsiMethod method : methods) {
+                MethodStatistics methodStatistics = new MethodStatistics(method);
+                method.accept(new JavaRecursiveMethodVisitor(methodStatistics));
+                blackhole.consume(methodStatistics.getComplexity());
+            }
+        });
+        nodes.nodes += methodNodes;
+    }
+
+    /**
+     * Complexity computed on the light tree of the same class, reparsed from its text.
+     */
+    @Benchmark
+    public List<MethodStatistics> lightTree() {
+        return LightMethodComplexity.computeComplexities(text, LanguageLevel.HIGHEST);
+    }
+}
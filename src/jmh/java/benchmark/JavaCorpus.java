@@ -0,0 +1,60 @@
+package benchmark;
+
+/**
+ * Generator of synthetic Java sources used by the benchmarks.
+ */
+final class JavaCorpus {
+
+    /**
+     * Lines generated per method.
+     */
+    static final int LINES_PER_METHOD = 24;
+
+    private JavaCorpus() {}
+
+    /**
+     * Generates a class whose methods mix branches, loops, boolean operators and exception handling.
+     * @param className name of the class
+     * @param noMethods number of methods in the class
+     * @return the text of the class
+     */
+    static String classText(String className, int noMethods) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package corpus;\n\n")
+                .append("public class ").append(className).append(" {\n\n");
+        for (int i = 0; i < noMethods; i++) {
+            String modifiers = i % 3 == 0 ? "public static" : i % 3 == 1 ? "private" : "protected";
+            String returnType = i % 2 == 0 ? "int" : "void";
+            builder.append("    ").append(modifiers).append(' ').append(returnType)
+                    .append(" method").append(i).append("(int a, int b, int[] values) {\n")
+                    .append("        int result = 0;\n")
+                    .append("        if (a > b && b > 0 || a == ").append(i).append(") {\n")
+                    .append("            result = a > 0 ? a : -a;\n")
+                    .append("        }\n")
+                    .append("        for (int i = 0; i < a; i++) {\n")
+                    .append("            result += i;\n")
+                    .append("        }\n")
+                    .append("        for (int value : values) {\n")
+                    .append("            while (value > 0) { value--; }\n")
+                    .append("        }\n")
+                    .append("        try {\n")
+                    .append("            result /= b;\n")
+                    .append("        } catch (ArithmeticException e) {\n")
+                    .append("            result = -1;\n")
+                    .append("        }\n")
+                    .append("        switch (result) {\n")
+                    .append("            case 0: result++; break;\n")
+                    .append("            case 1: result--; break;\n")
+                    .append("            default: break;\n")
+                    .append("        }\n");
+            if (returnType.equals("int")) {
+                builder.append("        return result;\n");
+            } else {
+                builder.append("        System.out.println(result);\n");
+            }
+            builder.append("    }\n\n");
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
+}
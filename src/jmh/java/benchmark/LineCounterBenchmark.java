@@ -0,0 +1,50 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import util.LineCounter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line counting of texts from 1 KB to 50 MB, against the former regex split.
+ * Run with -PjmhArgs="LineCounterBenchmark -prof gc" to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LineCounterBenchmark {
+
+    /**
+     * Size of the text in bytes.
+     */
+    @Param({"1024", "65536", "1048576", "10485760", "52428800"})
+    public int size;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(size);
+        int line = 0;
+        while (builder.length() < size) {
+            builder.append("Line ").append(line).append(" with [a link](docs/file").append(line % 100).append(".md)");
+            builder.append(line % 10 == 0 ? "\r\n" : "\n");
+            line++;
+        }
+        builder.setLength(size);
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public int countLines() {
+        return LineCounter.countLines(text);
+    }
+
+    @Benchmark
+    public int split() {
+        return text.split("\r\n|\r|\n").length;
+    }
+}
@@ -0,0 +1,106 @@
+package benchmark;
+
+import actions.FileLinks;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jol.info.GraphLayout;
+import service.LinkStatistics;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Footprint of the per-file links of a project, in the former layout of nested lists of
+ * LinkStatistics and in the compact FileLinks layout. The benchmarks measure building them,
+ * and report the retained heap of the layout they build, measured with JOL, as the retainedBytes counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LinkLayoutBenchmark {
+
+    /**
+     * Retained heap of the layout built by the running benchmark, measured once per iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void measure(LinkLayoutBenchmark benchmark, BenchmarkParams params) {
+            Object layout = params.getBenchmark().endsWith("listLayout")
+                    ? benchmark.listLayout(this) : benchmark.compactLayout(this);
+            retainedBytes = GraphLayout.parseInstance(layout).totalSize();
+        }
+    }
+
+    @Param({"1000"})
+    public int noFiles;
+
+    /**
+     * Links in each file, half of them URLs.
+     */
+    @Param({"100"})
+    public int linksPerFile;
+
+    /**
+     * Text of the links as extracted from the files, a new string for each occurrence.
+     */
+    private List<List<String>> fileLinks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fileLinks = new ArrayList<>(noFiles);
+        for (int file = 0; file < noFiles; file++) {
+            List<String> links = new ArrayList<>(linksPerFile);
+            for (int link = 0; link < linksPerFile; link++) {
+                // links are shared by groups of files, as in documentation sets linking to the same pages
+                links.add(link % 2 == 0
+                        ? new String("https://example.com/docs/page" + (file % 20) + "/" + link)
+                        : new String("docs/guide" + (file % 50) + "/section" + link + ".md"));
+            }
+            fileLinks.add(links);
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<List<LinkStatistics>>> listLayout(Footprint footprint) {
+        Map<String, List<List<LinkStatistics>>> values = new HashMap<>();
+        for (int file = 0; file < noFiles; file++) {
+            List<LinkStatistics> urls = new ArrayList<>();
+            List<LinkStatistics> references = new ArrayList<>();
+            for (String link : fileLinks.get(file)) {
+                (link.startsWith("https://") ? urls : references).add(new LinkStatistics(new String(link), true));
+            }
+            values.put("docs/file" + file + ".md", Collections.unmodifiableList(Arrays.asList(
+                    Collections.unmodifiableList(urls), Collections.unmodifiableList(references))));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public Map<String, FileLinks> compactLayout(Footprint footprint) {
+        Map<String, FileLinks> values = new HashMap<>();
+        for (int file = 0; file < noFiles; file++) {
+            List<String> links = fileLinks.get(file);
+            String[] texts = new String[links.size()];
+            int noUrls = 0;
+            for (String link : links) {
+                if (link.startsWith("https://")) {
+                    noUrls++;
+                }
+            }
+            int url = 0;
+            int reference = noUrls;
+            for (String link : links) {
+                texts[link.startsWith("https://") ? url++ : reference++] = FileLinks.intern(link);
+            }
+            values.put("docs/file" + file + ".md", new FileLinks(texts, noUrls, new BitSet()));
+        }
+        return values;
+    }
+}
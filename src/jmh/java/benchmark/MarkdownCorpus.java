@@ -0,0 +1,29 @@
+package benchmark;
+
+/**
+ * Generator of synthetic Markdown documents used by the benchmarks.
+ */
+final class MarkdownCorpus {
+
+    private MarkdownCorpus() {}
+
+    /**
+     * Generates a Markdown document made of sections with headers, text and links.
+     * @param index index of the document, used to vary the link targets
+     * @param sections number of sections in the document
+     * @return the text of the document
+     */
+    static String document(int index, int sections) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sections; i++) {
+            builder.append("# Section ").append(i).append('\n')
+                    .append('\n')
+                    .append("Some text describing section ").append(i).append(" of document ").append(index).append(".\n")
+                    .append("See [the guide](docs/guide").append(i % 10).append(".md) for details.\n")
+                    .append("More at [the site](https://example.com/").append(index).append('/').append(i).append(").\n")
+                    .append("<https://example.org/").append(i).append(">\n")
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+}
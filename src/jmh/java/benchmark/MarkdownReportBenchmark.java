@@ -0,0 +1,119 @@
+package benchmark;
+
+import actions.MDStatistics;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.intellij.plugins.markdown.lang.MarkdownFileType;
+import org.openjdk.jmh.annotations.*;
+import service.MarkdownService;
+import service.PluginMetrics;
+import service.PluginSettings;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full update of the Markdown views through MarkdownService.updateView,
+ * from the scan in the background read action to the update of both views on the UI thread.
+ * Every file is invalidated before each update, so that all of them are scanned again.
+ * The link index is disabled so that each visit of a file runs a scanner.
+ * With legacy set, the update scans the files twice instead, into a fresh MDStatistics for the
+ * summary and another one for the files tree, as updateView did before both views shared one scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MarkdownReportBenchmark {
+
+    /**
+     * Number of scanner runs of an update, read from the plugin metrics and reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Walks {
+        public long parsedFiles;
+    }
+
+    @Param({"5000"})
+    public int noFiles;
+
+    /**
+     * Sections of each generated file, each one holding a header and three links.
+     */
+    @Param({"3"})
+    public int sections;
+
+    /**
+     * Whether the files are visited on the fork-join pool; its size can be set through
+     * -Djava.util.concurrent.ForkJoinPool.common.parallelism to measure the scaling with cores.
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    /**
+     * Whether the former update scanning every file twice is measured instead of MarkdownService.updateView.
+     */
+    @Param({"false", "true"})
+    public boolean legacy;
+
+    private final ProjectFixture fixture = new ProjectFixture();
+    private List<VirtualFile> files;
+    private MarkdownService markdownService;
+    private PluginMetrics.Counter parsed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture.setUp();
+        files = fixture.addFiles(noFiles,
+                i -> "docs/dir" + (i % 50) + "/file" + i + ".md",
+                i -> MarkdownCorpus.document(i, sections));
+        PluginSettings.getInstance().parallelScan = parallel;
+        PluginSettings.getInstance().linkIndex = false;
+        markdownService = MarkdownService.getInstance(fixture.getProject());
+        parsed = PluginMetrics.getInstance(fixture.getProject()).counter("markdown.scan.parsed");
+        markdownService.updateView(fixture.getProject()).get();
+    }
+
+    @Setup(Level.Invocation)
+    public void invalidate() {
+        markdownService.invalidate(files);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PluginSettings.getInstance().linkIndex = true;
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public void updateView(Walks walks) throws Exception {
+        long runs = parsed.get();
+        if (legacy) {
+            legacyUpdate();
+        } else {
+            markdownService.updateView(fixture.getProject()).get();
+        }
+        walks.parsedFiles += parsed.get() - runs;
+    }
+
+    /**
+     * The scans of the former updateView, without the update of the views.
+     */
+    private void legacyUpdate() {
+        ReadAction.run(() -> {
+            Collection<VirtualFile> markdownFiles = FileTypeIndex.getFiles(MarkdownFileType.INSTANCE,
+                    GlobalSearchScope.projectScope(fixture.getProject()));
+            for (int view = 0; view < 2; view++) {
+                MDStatistics statistics = new MDStatistics();
+                statistics.setParallel(parallel);
+                statistics.updateStatistics(fixture.getProject(), markdownFiles);
+            }
+        });
+    }
+}
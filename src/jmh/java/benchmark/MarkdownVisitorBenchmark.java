@@ -0,0 +1,152 @@
+package benchmark;
+
+import actions.MDFileData;
+import actions.MDFileScanner;
+import actions.MDStreamScanner;
+import com.intellij.extapi.psi.ASTWrapperPsiElement;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.psi.impl.source.tree.LeafPsiElement;
+import com.intellij.psi.tree.IElementType;
+import org.intellij.plugins.markdown.lang.MarkdownElementType;
+import org.intellij.plugins.markdown.lang.psi.impl.MarkdownFile;
+import org.intellij.plugins.markdown.lang.psi.impl.MarkdownLinkDestinationImpl;
+import org.openjdk.jmh.annotations.*;
+import service.LinkStatistics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.intellij.markdown.flavours.gfm.GFMTokenTypes.GFM_AUTOLINK;
+import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.AUTOLINK;
+import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.LINK_DESTINATION;
+import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.ATX_HEADER;
+import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.TEXT;
+
+/**
+ * Time and allocation of visiting a single large Markdown document,
+ * through the psi visitor used before the links were published once per file,
+ * through the current psi tree scanner and through the streaming scanner.
+ * MDStreamScannerTest checks that both scanners extract the same data.
+ * Run with -PjmhArgs="MarkdownVisitorBenchmark -prof gc" to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MarkdownVisitorBenchmark {
+
+    /**
+     * Lines in the generated document, each section of the corpus spans 7 lines.
+     */
+    @Param({"10000"})
+    public int noLines;
+
+    private final ProjectFixture fixture = new ProjectFixture();
+    private List<VirtualFile> files;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture.setUp();
+        files = fixture.addFiles(1, i -> "docs/large.md", i -> MarkdownCorpus.document(i, noLines / 7));
+    }
+
+    private static MDFileData stream(VirtualFile file) {
+        try {
+            return MDStreamScanner.scan(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    /**
+     * The visitor used before the links were published once per file, kept as the baseline.
+     */
+    @Benchmark
+    public Map<String, List<List<LinkStatistics>>> legacyVisitFile() {
+        return ReadAction.compute(() -> LegacyVisitor.visit(fixture.getProject(),
+                (MarkdownFile) PsiManager.getInstance(fixture.getProject()).findFile(files.get(0))));
+    }
+
+    @Benchmark
+    public MDFileData visitFile() {
+        return ReadAction.compute(() -> MDFileScanner.scan(
+                PsiManager.getInstance(fixture.getProject()).findFile(files.get(0))));
+    }
+
+    @Benchmark
+    public MDFileData streamFile() {
+        return stream(files.get(0));
+    }
+
+    /**
+     * The former MDStatistics visitor: for every psi node, the link lists of the file
+     * were put into the values map again and the whole map was logged.
+     */
+    private static final class LegacyVisitor {
+
+        private static final Logger logger = Logger.getInstance(LegacyVisitor.class);
+
+        static Map<String, List<List<LinkStatistics>>> visit(Project project, MarkdownFile psiFile) {
+            Map<String, List<List<LinkStatistics>>> values = new HashMap<>();
+            List<LinkStatistics> repoReferences = new ArrayList<>();
+            List<LinkStatistics> urls = new ArrayList<>();
+            String fileName = psiFile.getName();
+            int[] counts = new int[2];
+            counts[0] = psiFile.getText().split("\r\n|\r|\n").length;
+
+            psiFile.accept(new PsiRecursiveElementVisitor() {
+                @Override
+                public void visitElement(PsiElement element) {
+                    IElementType elemType = element.getNode().getElementType();
+
+                    if ((element.getClass().equals(ASTWrapperPsiElement.class) && elemType == AUTOLINK)
+                            || (element.getClass().equals(MarkdownLinkDestinationImpl.class) && elemType == LINK_DESTINATION)
+                            || (element.getClass().equals(LeafPsiElement.class)
+                            && (elemType == MarkdownElementType.platformType(GFM_AUTOLINK)
+                            && element.getParent().getNode().getElementType() != LINK_DESTINATION))) {
+                        if (element.getClass().equals(MarkdownLinkDestinationImpl.class) && elemType == LINK_DESTINATION
+                                && element.getFirstChild().getNode().getElementType() == TEXT) {
+                            boolean validity = Files.exists(Paths.get(project.getBasePath(), element.getText()));
+                            repoReferences.add(new LinkStatistics(element.getText(), validity));
+                        } else {
+                            urls.add(new LinkStatistics(element.getText(), true));
+                        }
+                    }
+
+                    if (elemType == ATX_HEADER) {
+                        counts[1]++;
+                    }
+
+                    List<List<LinkStatistics>> links = new ArrayList<>();
+                    links.add(urls);
+                    links.add(repoReferences);
+
+                    values.put(fileName, links);
+                    logger.info(values.toString());
+                    super.visitElement(element);
+                }
+            });
+            return values;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A light IDE project filled with generated files.
+ */
+final class ProjectFixture {
+
+    private CodeInsightTestFixture fixture;
+
+    /**
+     * Starts the light project.
+     */
+    void setUp() {
+        IdeaTestFixtureFactory factory = IdeaTestFixtureFactory.getFixtureFactory();
+        TestFixtureBuilder<IdeaProjectTestFixture> builder = factory.createLightFixtureBuilder();
+        fixture = factory.createCodeInsightFixture(builder.getFixture());
+        EdtTestUtil.runInEdtAndWait(() -> fixture.setUp());
+    }
+
+    /**
+     * Adds generated files to the project.
+     * @param noFiles number of files to generate
+     * @param path generates the path of the file with the given index
+     * @param text generates the text of the file with the given index
+     * @return the added files
+     */
+    List<VirtualFile> addFiles(int noFiles, IntFunction<String> path, IntFunction<String> text) {
+        List<VirtualFile> files = new ArrayList<>(noFiles);
+        EdtTestUtil.runInEdtAndWait(() -> {
+            for (int i = 0; i < noFiles; i++) {
+                files.add(fixture.addFileToProject(path.apply(i), text.apply(i)).getVirtualFile());
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Disposes the light project.
+     */
+    void tearDown() {
+        EdtTestUtil.runInEdtAndWait(() -> fixture.tearDown());
+    }
+
+    Project getProject() {
+        return fixture.getProject();
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import org.openjdk.jmh.annotations.*;
+import service.ProjectReport;
+import service.PluginSettings;
+import service.ProjectStatisticsTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the project-wide Java report on a generated codebase,
+ * about one million lines with the default parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProjectReportBenchmark {
+
+    @Param({"1000"})
+    public int noFiles;
+
+    @Param({"42"})
+    public int noMethods;
+
+    /**
+     * Whether the methods are analysed on the light syntax tree instead of the psi.
+     */
+    @Param({"false", "true"})
+    public boolean lightTree;
+
+    private final ProjectFixture fixture = new ProjectFixture();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture.setUp();
+        fixture.addFiles(noFiles,
+                i -> "src/pkg" + (i % 50) + "/Generated" + i + ".java",
+                i -> JavaCorpus.classText("Generated" + i, noMethods));
+        PluginSettings.getInstance().lightTreeProjectReport = lightTree;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public ProjectReport projectReport() {
+        ProjectStatisticsTask task = new ProjectStatisticsTask(fixture.getProject());
+        task.run(new EmptyProgressIndicator());
+        return task.getReport();
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import data.SummaryData;
+import org.openjdk.jmh.annotations.*;
+import util.SummaryView;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replacement of the rows of the summary table, on the event dispatch thread,
+ * alternating between two lists of rows which differ either in every value or in a single one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SummaryViewBenchmark {
+
+    /**
+     * Rows shown in the table.
+     */
+    @Param({"10", "1000", "10000"})
+    public int noRows;
+
+    /**
+     * Whether a single value differs between the two lists, instead of all of them.
+     */
+    @Param({"false", "true"})
+    public boolean singleChange;
+
+    private SummaryView view;
+    private final List<List<SummaryData>> summaries = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        for (int version = 0; version < 2; version++) {
+            List<SummaryData> rows = new ArrayList<>(noRows);
+            for (int i = 0; i < noRows; i++) {
+                boolean changed = !singleChange || i == noRows / 2;
+                rows.add(new SummaryData("Statistic " + i, String.valueOf(changed ? i + version : i)));
+            }
+            summaries.add(rows);
+        }
+        SwingUtilities.invokeAndWait(() -> view = new SummaryView());
+    }
+
+    @Benchmark
+    public void updateModel() throws Exception {
+        List<SummaryData> rows = summaries.get(next);
+        next = 1 - next;
+        SwingUtilities.invokeAndWait(() -> view.updateModel(rows));
+    }
+}
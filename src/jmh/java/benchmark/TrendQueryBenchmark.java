@@ -0,0 +1,63 @@
+package benchmark;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.openjdk.jmh.annotations.*;
+import service.FileStatistics.FileStatisticsBuilder;
+import service.FileStatisticsStore;
+import service.StatisticsColumns;
+import service.StatisticsSeries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trend queries over a statistics history of generated snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TrendQueryBenchmark {
+
+    @Param({"100000"})
+    public int noSnapshots;
+
+    @Param({"1000"})
+    public int noFiles;
+
+    private Path directory;
+    private FileStatisticsStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("statistics");
+        store = new FileStatisticsStore(directory, "benchmark");
+        for (int i = 0; i < noSnapshots; i++) {
+            store.append("src/File" + (i % noFiles) + ".java", i * 1000L, new FileStatisticsBuilder()
+                    .withLines(100 + i / noFiles * (i % 7))
+                    .withFileLength(4000 + i % 300)
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtil.delete(directory.toFile());
+    }
+
+    @Benchmark
+    public List<StatisticsColumns.Growth> topGrowth() {
+        return store.topGrowth(StatisticsColumns.Metric.LINES, noSnapshots * 250L, noSnapshots * 750L, 10);
+    }
+
+    @Benchmark
+    public StatisticsSeries series() {
+        return store.readSeries("src/File42.java");
+    }
+}
@@ -2,16 +2,11 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.search.FileTypeIndex;
-import com.intellij.psi.search.GlobalSearchScope;
-import org.intellij.plugins.markdown.lang.MarkdownFileType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import service.MarkdownService;
 
 import javax.swing.*;
-import java.util.Collection;
 
 /**
  * @author Irem Ugurlu
@@ -48,7 +43,6 @@ public class MarkdownAction extends AnAction {
      */
     @Override
     public void actionPerformed(@NotNull AnActionEvent event) {
-        System.out.println("something changed?");
         // Get project, return warning message if no project open.
         Project currentProject = event.getProject();
         if (currentProject == null) {
@@ -58,14 +52,9 @@ public class MarkdownAction extends AnAction {
             return;
         }
 
-        // Get virtual files
-        Collection<VirtualFile> virtualFiles =
-                FileTypeIndex.getFiles(MarkdownFileType.INSTANCE, GlobalSearchScope.projectScope(currentProject));
-
-
-        // Update markdown service view.
+        // Update markdown service view with all md files of the project.
         MarkdownService markdownService = MarkdownService.getInstance(currentProject);
-        markdownService.updateView(currentProject, virtualFiles);
+        markdownService.updateView(currentProject);
     }
 
     /**
@@ -0,0 +1,84 @@
+package actions;
+
+import com.intellij.util.containers.WeakInterner;
+
+import java.util.BitSet;
+
+/**
+ * An immutable and compact holder of the links of a MD file.
+ * The URLs come first in a single array, followed by the repository references,
+ * the link texts are interned so that links repeated across files share one string,
+ * and the invalid links are marked in a bit set, usually empty.
+ */
+public final class FileLinks {
+
+    private static final WeakInterner<String> INTERNER = new WeakInterner<>();
+
+    /**
+     * Shared by the files whose links are all valid.
+     */
+    private static final BitSet ALL_VALID = new BitSet(0);
+
+    private final String[] links;
+    private final int noUrls;
+    private final BitSet invalid;
+
+    /**
+     * Construct an instance of FileLinks.
+     * @param links the URLs followed by the repository references, interned with intern
+     * @param noUrls number of URLs at the start of the array
+     * @param invalid the indices of the invalid links
+     */
+    public FileLinks(String[] links, int noUrls, BitSet invalid) {
+        this.links = links;
+        this.noUrls = noUrls;
+        this.invalid = invalid.isEmpty() ? ALL_VALID : invalid;
+    }
+
+    /**
+     * Returns the shared instance of a link text.
+     * @param link the text of a link
+     * @return the interned text
+     */
+    public static String intern(String link) {
+        return INTERNER.intern(link);
+    }
+
+    public int size() {
+        return links.length;
+    }
+
+    public int getNoUrls() {
+        return noUrls;
+    }
+
+    public int getNoRepoReferences() {
+        return links.length - noUrls;
+    }
+
+    /**
+     * Gets the text of a link.
+     * @param index index of the link, URLs first
+     * @return the text of the link
+     */
+    public String getLink(int index) {
+        return links[index];
+    }
+
+    public boolean isUrl(int index) {
+        return index < noUrls;
+    }
+
+    public boolean isValid(int index) {
+        return !invalid.get(index);
+    }
+
+    /**
+     * Describes the validity of a link the way it is displayed.
+     * @param index index of the link
+     * @return "valid" or "invalid"
+     */
+    public String validityToString(int index) {
+        return isValid(index) ? "valid" : "invalid";
+    }
+}
@@ -0,0 +1,78 @@
+package actions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable data class to hold the raw data extracted from a single MD file:
+ * line and header counts and the text of its links.
+ * It does not depend on other files, so it can be stored in an index.
+ */
+public class MDFileData {
+
+    /**
+     * Number of lines in the file.
+     */
+    private final int noLines;
+    public int getNoLines() {
+        return noLines;
+    }
+
+    /**
+     * Number of headers in the file.
+     */
+    private final int noHeaders;
+    public int getNoHeaders() {
+        return noHeaders;
+    }
+
+    /**
+     * URLs found in the file.
+     */
+    private final List<String> urls;
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    /**
+     * Repository references found in the file.
+     */
+    private final List<String> repoReferences;
+    public List<String> getRepoReferences() {
+        return repoReferences;
+    }
+
+    /**
+     * Construct an instance of MDFileData.
+     * @param noLines number of lines in the file
+     * @param noHeaders number of headers in the file
+     * @param urls URLs found in the file
+     * @param repoReferences repository references found in the file
+     */
+    public MDFileData(int noLines, int noHeaders, List<String> urls, List<String> repoReferences) {
+        this.noLines = noLines;
+        this.noHeaders = noHeaders;
+        this.urls = Collections.unmodifiableList(urls);
+        this.repoReferences = Collections.unmodifiableList(repoReferences);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MDFileData that = (MDFileData) o;
+        return noLines == that.noLines
+                && noHeaders == that.noHeaders
+                && urls.equals(that.urls)
+                && repoReferences.equals(that.repoReferences);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = noLines;
+        result = 31 * result + noHeaders;
+        result = 31 * result + urls.hashCode();
+        result = 31 * result + repoReferences.hashCode();
+        return result;
+    }
+}
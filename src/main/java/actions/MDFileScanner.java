@@ -0,0 +1,95 @@
+package actions;
+
+import com.intellij.extapi.psi.ASTWrapperPsiElement;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.psi.impl.source.tree.LeafPsiElement;
+import com.intellij.psi.tree.IElementType;
+import org.intellij.plugins.markdown.lang.MarkdownElementType;
+import org.intellij.plugins.markdown.lang.psi.impl.MarkdownLinkDestinationImpl;
+import util.LineCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.intellij.markdown.flavours.gfm.GFMTokenTypes.GFM_AUTOLINK;
+import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.AUTOLINK;
+import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.LINK_DESTINATION;
+import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.ATX_HEADER;
+import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.TEXT;
+
+/**
+ * Extracts the raw data of a MD file from its psi tree.
+ */
+public final class MDFileScanner {
+
+    /**
+     * Platform element type of the GFM bare URLs.
+     */
+    private static final IElementType GFM_AUTOLINK_TYPE = MarkdownElementType.platformType(GFM_AUTOLINK);
+
+    private MDFileScanner() {}
+
+    /**
+     * Visits the psi tree of a MD file.
+     * @param psiFile the file to scan
+     * @return the data of the file
+     */
+    public static MDFileData scan(PsiFile psiFile) {
+        LinkVisitor visitor = new LinkVisitor();
+        psiFile.accept(visitor);
+        int noLines = LineCounter.countLines(psiFile.getViewProvider().getContents());
+        return new MDFileData(noLines, visitor.noHeaders, visitor.urls, visitor.repoReferences);
+    }
+
+    /**
+     * Visitor collecting the links and headers of a file.
+     * Nothing is allocated for the visited nodes, only for the links found.
+     */
+    private static class LinkVisitor extends PsiRecursiveElementVisitor {
+
+        private final List<String> urls = new ArrayList<>();
+        private final List<String> repoReferences = new ArrayList<>();
+        private int noHeaders;
+
+        @Override
+        public void visitElement(PsiElement element) {
+            IElementType elemType = element.getNode().getElementType();
+
+            // counts headers
+            if (elemType == ATX_HEADER) {
+                noHeaders++;
+            } else if (isLink(element, elemType)) {
+                String link = element.getText();
+                if (elemType == LINK_DESTINATION && element.getFirstChild().getNode().getElementType() == TEXT) {
+                    repoReferences.add(link);
+                } else {
+                    urls.add(link);
+                }
+            }
+            super.visitElement(element);
+        }
+    }
+
+    /**
+     * Finds links by looking at right element types in a markdown file.
+     * The element type is compared first, as it rules out most of the nodes.
+     * @param element the element to check
+     * @param elemType the element type of the element
+     * @return true if the element is an autolink, a link destination or a bare URL outside of a link destination
+     */
+    private static boolean isLink(PsiElement element, IElementType elemType) {
+        if (elemType == AUTOLINK) {
+            return element.getClass() == ASTWrapperPsiElement.class;
+        }
+        if (elemType == LINK_DESTINATION) {
+            return element.getClass() == MarkdownLinkDestinationImpl.class;
+        }
+        if (elemType == GFM_AUTOLINK_TYPE) {
+            return element.getClass() == LeafPsiElement.class
+                    && element.getParent().getNode().getElementType() != LINK_DESTINATION;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package actions;
+
+/**
+ * An immutable data class to hold the statistics of a single MD file.
+ * Instances are cached by MDStatistics and reused until the
+ * modification stamp of the file changes.
+ */
+public class MDFileStatistics {
+
+    /**
+     * Modification stamp of the file at the time it was visited.
+     */
+    private final long modificationStamp;
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    /**
+     * Number of lines in the file.
+     */
+    private final int noLines;
+    public int getNoLines() {
+        return noLines;
+    }
+
+    /**
+     * Number of headers in the file.
+     */
+    private final int noHeaders;
+    public int getNoHeaders() {
+        return noHeaders;
+    }
+
+    /**
+     * URLs and repository references of the file.
+     */
+    private final FileLinks links;
+    public FileLinks getLinks() {
+        return links;
+    }
+
+    public int getNoLinks() {
+        return links.size();
+    }
+
+    public int getNoRepoLinks() {
+        return links.getNoRepoReferences();
+    }
+
+    public int getNoUrls() {
+        return links.getNoUrls();
+    }
+
+    /**
+     * Checks whether the file contains any link.
+     * @return true if at least one link was found
+     */
+    public boolean hasLinks() {
+        return getNoLinks() > 0;
+    }
+
+    /**
+     * Construct an instance of MDFileStatistics.
+     * @param modificationStamp modification stamp of the visited file
+     * @param noLines number of lines in the file
+     * @param noHeaders number of headers in the file
+     * @param links URLs and repository references found in the file
+     */
+    MDFileStatistics(long modificationStamp, int noLines, int noHeaders, FileLinks links) {
+        this.modificationStamp = modificationStamp;
+        this.noLines = noLines;
+        this.noHeaders = noHeaders;
+        this.links = links;
+    }
+}
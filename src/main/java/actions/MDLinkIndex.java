@@ -0,0 +1,128 @@
+package actions;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.SingleRootFileViewProvider;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.text.CharSequenceReader;
+import org.intellij.plugins.markdown.lang.MarkdownFileType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import service.PluginSettings;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File based index holding the raw data of each MD file, maintained by the platform
+ * as files change, so statistics can be gathered without parsing the files.
+ */
+public class MDLinkIndex extends SingleEntryFileBasedIndexExtension<MDFileData> {
+
+    public static final ID<Integer, MDFileData> NAME = ID.create("markdown.plugin.links");
+
+    /**
+     * Format version, to be incremented whenever the indexer or the externalizer changes.
+     */
+    private static final int VERSION = 3;
+
+    @NotNull
+    @Override
+    public ID<Integer, MDFileData> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public SingleEntryIndexer<MDFileData> getIndexer() {
+        return new SingleEntryIndexer<MDFileData>(false) {
+            @Nullable
+            @Override
+            protected MDFileData computeValue(@NotNull FileContent inputData) {
+                CharSequence text = inputData.getContentAsText();
+                if (text.length() > PluginSettings.getInstance().streamingScanThreshold
+                        || SingleRootFileViewProvider.isTooLargeForIntelligence(inputData.getFile())) {
+                    try {
+                        return MDStreamScanner.scan(new CharSequenceReader(text));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return MDFileScanner.scan(inputData.getPsiFile());
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<MDFileData> getValueExternalizer() {
+        return new DataExternalizer<MDFileData>() {
+            @Override
+            public void save(@NotNull DataOutput out, MDFileData value) throws IOException {
+                DataInputOutputUtil.writeINT(out, value.getNoLines());
+                DataInputOutputUtil.writeINT(out, value.getNoHeaders());
+                writeLinks(out, value.getUrls());
+                writeLinks(out, value.getRepoReferences());
+            }
+
+            @Override
+            public MDFileData read(@NotNull DataInput in) throws IOException {
+                int noLines = DataInputOutputUtil.readINT(in);
+                int noHeaders = DataInputOutputUtil.readINT(in);
+                List<String> urls = readLinks(in);
+                List<String> repoReferences = readLinks(in);
+                return new MDFileData(noLines, noHeaders, urls, repoReferences);
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(MarkdownFileType.INSTANCE);
+    }
+
+    /**
+     * Gets the indexed data of a file.
+     * @param project current project
+     * @param virtualFile the MD file
+     * @return the data of the file, or null while indexing or if the file is not indexed
+     */
+    @Nullable
+    public static MDFileData getFileData(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+        Map<Integer, MDFileData> data = FileBasedIndex.getInstance().getFileData(NAME, virtualFile, project);
+        return data.isEmpty() ? null : data.values().iterator().next();
+    }
+
+    private static void writeLinks(DataOutput out, List<String> links) throws IOException {
+        DataInputOutputUtil.writeINT(out, links.size());
+        for (String link : links) {
+            IOUtil.writeUTF(out, link);
+        }
+    }
+
+    private static List<String> readLinks(DataInput in) throws IOException {
+        int size = DataInputOutputUtil.readINT(in);
+        List<String> links = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            links.add(IOUtil.readUTF(in));
+        }
+        return links;
+    }
+}
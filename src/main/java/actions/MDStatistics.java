@@ -1,29 +1,25 @@
 package actions;
 
-import service.LinkStatistics;
-import util.LinkStatistics;
-import com.intellij.extapi.psi.ASTWrapperPsiElement;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
-import com.intellij.psi.impl.source.tree.LeafPsiElement;
-import com.intellij.psi.tree.IElementType;
-import org.intellij.plugins.markdown.lang.MarkdownElementType;
-import org.intellij.plugins.markdown.lang.psi.impl.MarkdownFile;
-import org.intellij.plugins.markdown.lang.psi.impl.MarkdownLinkDestinationImpl;
+import service.LinkResolver;
+import service.PluginMetrics;
+import service.PluginSettings;
+import service.UrlChecker;
 import service.SummaryService;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
 import java.util.*;
-
-import static org.intellij.markdown.flavours.gfm.GFMTokenTypes.GFM_AUTOLINK;
-import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.AUTOLINK;
-import static org.intellij.plugins.markdown.lang.MarkdownElementTypes.LINK_DESTINATION;
-import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.ATX_HEADER;
-import static org.intellij.plugins.markdown.lang.MarkdownTokenTypes.TEXT;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * @author Irem Ugurlu
@@ -35,6 +31,11 @@ public class MDStatistics {
 
     final static Logger logger = Logger.getInstance(SummaryService.class);
 
+    /**
+     * Minimum number of changed files for which a parallel update is worth it.
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
     /**
      * Total number of links.
      */
@@ -90,88 +91,337 @@ public class MDStatistics {
     }
 
     /**
-     * The map of files and their references and links
+     * The map of file paths and their references and links
      */
-    private Map<String, List<List<LinkStatistics>>> values;
-    public Map<String, List<List<LinkStatistics>>> getValues() {
+    private Map<String, FileLinks> values;
+    public Map<String, FileLinks> getValues() {
         return values;
     }
 
-    boolean linkFound = false;
+    /**
+     * Number of files visited through the psi tree.
+     * The counters are only written by updates, under the lock of the instance,
+     * and are volatile so that the metrics can read them from any thread.
+     */
+    private volatile int noVisitedFiles;
+    public int getNoVisitedFiles() {
+        return noVisitedFiles;
+    }
+
+    /**
+     * Number of files whose cached statistics were reused by an update.
+     */
+    private volatile int noReusedFiles;
+    public int getNoReusedFiles() {
+        return noReusedFiles;
+    }
 
     /**
-     * Method updating statistics
+     * The results of the last visit of each file, used to re-visit only the files that changed.
+     */
+    private final Map<VirtualFile, MDFileStatistics> fileStatistics;
+
+    /**
+     * Files to visit again on the next update even if their modification stamp did not change.
+     */
+    private final Set<VirtualFile> invalidatedFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Forces the given files to be visited again on the next update,
+     * e.g. because the existence of their link targets changed.
+     * @param virtualFiles files to visit again
+     */
+    public void invalidate(Collection<VirtualFile> virtualFiles) {
+        invalidatedFiles.addAll(virtualFiles);
+    }
+
+    /**
+     * Whether changed files are visited concurrently.
+     */
+    private boolean parallel;
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Method updating statistics.
+     * Only files whose modification stamp changed since the last call are visited again,
+     * the totals are adjusted by the difference between the old and the new results.
+     * When running under a progress indicator the update can be cancelled between two files,
+     * leaving the statistics of the files visited so far in place.
      * @param currentProject current project
      * @param virtualFiles collection of all virtual files
      */
     public void updateStatistics(Project currentProject, Collection<VirtualFile> virtualFiles) {
 
-        // gets each md file and gathers statistics
+        // drops the files that are not part of the collection anymore
+        Set<VirtualFile> currentFiles = new HashSet<>(virtualFiles);
+        Iterator<Map.Entry<VirtualFile, MDFileStatistics>> iterator = fileStatistics.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<VirtualFile, MDFileStatistics> entry = iterator.next();
+            if (!currentFiles.contains(entry.getKey())) {
+                remove(entry.getValue());
+                LinkResolver.getInstance(currentProject).forget(entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        visitChanged(currentProject, virtualFiles);
+
+        // the links are keyed by path again, as moved files keep their statistics
+        values.clear();
+        for (Map.Entry<VirtualFile, MDFileStatistics> entry : fileStatistics.entrySet()) {
+            values.put(entry.getKey().getPath(), entry.getValue().getLinks());
+        }
+    }
+
+    /**
+     * Method updating the statistics of the given files only, e.g. the files reported by change events.
+     * Files which are not included in the statistics anymore, such as deleted files, are dropped.
+     * @param currentProject current project
+     * @param virtualFiles the files to update
+     * @param included whether a file is part of the statistics
+     */
+    public void updateFiles(Project currentProject, Collection<VirtualFile> virtualFiles,
+                            Predicate<VirtualFile> included) {
+        List<VirtualFile> includedFiles = new ArrayList<>();
         for (VirtualFile virtualFile : virtualFiles) {
-            List<LinkStatistics> repoReferences = new ArrayList<>();
-            List<LinkStatistics> urls = new ArrayList<>();
-            linkFound = false;
-            noFiles++;
-            String fileName = virtualFile.getName();
-
-            MarkdownFile psiFile = (MarkdownFile)PsiManager.getInstance(currentProject).findFile(virtualFile);
-
-            noLines += psiFile.getText().split("\r\n|\r|\n").length;
-
-            psiFile.accept(new PsiRecursiveElementVisitor() {
-                @Override
-                public void visitElement(PsiElement element) {
-                    IElementType elemType = element.getNode().getElementType();
-
-                    //finds links by looking at right element types in a markdown file
-                    if ((element.getClass().equals(ASTWrapperPsiElement.class) && elemType == AUTOLINK)
-                            || (element.getClass().equals(MarkdownLinkDestinationImpl.class) && elemType == LINK_DESTINATION)
-                            || (element.getClass().equals(LeafPsiElement.class)
-                            && (elemType == MarkdownElementType.platformType(GFM_AUTOLINK)
-                            && element.getParent().getNode().getElementType() != LINK_DESTINATION))) {
-                        linkFound = true;
-                        noLinks++;
-                        if((element.getClass().equals(MarkdownLinkDestinationImpl.class) && elemType == LINK_DESTINATION)) {
-                            if(element.getFirstChild().getNode().getElementType()==TEXT){
-
-                                // Check whether the internal link is valid
-                                Boolean validity = MDStatistics.checkFileValidity(currentProject, element.getText());
-                                repoReferences.add(new LinkStatistics(element.getText(), validity));
-                                noRepoLinks++;
-
-                            } else { urls.add(new LinkStatistics(element.getText(), true)); noUrls++; }
-                        } else { urls.add(new LinkStatistics(element.getText(), true));noUrls++; }
-                    }
+            if (included.test(virtualFile)) {
+                includedFiles.add(virtualFile);
+            } else {
+                drop(currentProject, virtualFile);
+            }
+        }
+        visitChanged(currentProject, includedFiles);
+    }
 
-                    // counts headers
-                    if(elemType == ATX_HEADER) { noHeaders++; }
+    /**
+     * Visits the given files whose modification stamp changed since their last visit, or which were invalidated.
+     * The invalidation of a file is cleared when it is collected, so that an invalidation arriving during
+     * its visit is kept for the next update; it is restored if the update is cancelled.
+     * @param currentProject current project
+     * @param virtualFiles the files to check
+     */
+    private void visitChanged(Project currentProject, Collection<VirtualFile> virtualFiles) {
 
-                    List<List<LinkStatistics>> links = new ArrayList<>();
-                    links.add(urls);
-                    links.add(repoReferences);
+        // collects the md files changed since the last update
+        List<VirtualFile> changedFiles = new ArrayList<>();
+        List<VirtualFile> takenInvalidations = new ArrayList<>();
+        for (VirtualFile virtualFile : virtualFiles) {
+            MDFileStatistics cached = fileStatistics.get(virtualFile);
+            boolean invalidated = invalidatedFiles.remove(virtualFile);
+            if (invalidated) {
+                takenInvalidations.add(virtualFile);
+            }
+            if (invalidated || cached == null || cached.getModificationStamp() != getModificationStamp(virtualFile)) {
+                changedFiles.add(virtualFile);
+            }
+        }
+        noReusedFiles += virtualFiles.size() - changedFiles.size();
+        PluginMetrics.getInstance(currentProject).histogram("markdown.scan.files").record(changedFiles.size());
 
-                    values.put(fileName, links);
-                    logger.info(values.toString());
-                    super.visitElement(element);
+        try {
+            if (parallel && changedFiles.size() >= PARALLEL_THRESHOLD) {
+                updateConcurrently(currentProject, changedFiles);
+            } else {
+                for (VirtualFile virtualFile : changedFiles) {
+                    ProgressManager.checkCanceled();
+                    apply(currentProject, virtualFile, visitFile(currentProject, virtualFile));
                 }
-            });
+            }
+        } catch (ProcessCanceledException e) {
+            invalidatedFiles.addAll(takenInvalidations);
+            throw e;
+        }
+    }
 
-            // counts numbers of files with links
-            if (linkFound) { noFilesLinks++; }
+    /**
+     * Visits the files on the fork-join pool, then merges the per-file results into the totals
+     * on the calling thread, which holds the read action of the update.
+     * A worker never waits for a read action: when a write action is pending the update is cancelled,
+     * so that the read action of the caller can be released and restarted after the write.
+     * @param currentProject current project
+     * @param changedFiles files to visit
+     */
+    private void updateConcurrently(Project currentProject, List<VirtualFile> changedFiles) {
+        Map<VirtualFile, MDFileStatistics> fileResults = new ConcurrentHashMap<>();
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+                changedFiles, ProgressManager.getInstance().getProgressIndicator(), false, false,
+                virtualFile -> {
+                    boolean read = ApplicationManagerEx.getApplicationEx().tryRunReadAction(() -> {
+                        MDFileStatistics fileResult = visitFile(currentProject, virtualFile);
+                        if (fileResult != null) {
+                            fileResults.put(virtualFile, fileResult);
+                        }
+                    });
+                    if (!read) {
+                        throw new ProcessCanceledException();
+                    }
+                    return true;
+                });
+        ProgressManager.checkCanceled();
+        for (VirtualFile virtualFile : changedFiles) {
+            apply(currentProject, virtualFile, fileResults.get(virtualFile));
+        }
+    }
+
+    /**
+     * Replaces the cached statistics of a file with the result of a new visit.
+     * @param currentProject current project
+     * @param virtualFile the visited file
+     * @param fileResult statistics of the file, null if it could not be visited
+     */
+    private void apply(Project currentProject, VirtualFile virtualFile, MDFileStatistics fileResult) {
+        if (fileResult == null) {
+            // the file cannot be read anymore, its old statistics are dropped from the totals
+            drop(currentProject, virtualFile);
+            return;
+        }
+        noVisitedFiles++;
+        MDFileStatistics cached = fileStatistics.put(virtualFile, fileResult);
+        if (cached != null) {
+            remove(cached);
+        }
+        add(fileResult);
+        values.put(virtualFile.getPath(), fileResult.getLinks());
+    }
+
+    /**
+     * Removes the statistics and the link registrations of a file from the cache and the totals.
+     * @param currentProject current project
+     * @param virtualFile the file to drop
+     */
+    private void drop(Project currentProject, VirtualFile virtualFile) {
+        invalidatedFiles.remove(virtualFile);
+        LinkResolver.getInstance(currentProject).forget(virtualFile);
+        MDFileStatistics cached = fileStatistics.remove(virtualFile);
+        if (cached != null) {
+            remove(cached);
+            values.remove(virtualFile.getPath());
+        }
+    }
+
+    /**
+     * Gathers the statistics of a single md file, from the link index when it is available
+     * and by visiting the psi tree otherwise.
+     * Only reads shared state, so several files can be visited at the same time.
+     * @param currentProject current project
+     * @param virtualFile file to visit
+     * @return statistics of the file, or null if the file has no psi
+     */
+    private static MDFileStatistics visitFile(Project currentProject, VirtualFile virtualFile) {
+        long start = System.nanoTime();
+        try {
+            return scanFile(currentProject, virtualFile);
+        } finally {
+            PluginMetrics.getInstance(currentProject).timer("markdown.scan.file").recordSince(start);
         }
     }
 
+    /**
+     * Gathers the statistics of a single md file, see visitFile.
+     */
+    private static MDFileStatistics scanFile(Project currentProject, VirtualFile virtualFile) {
+        long modificationStamp = getModificationStamp(virtualFile);
+        MDFileData fileData = PluginSettings.getInstance().linkIndex
+                ? MDLinkIndex.getFileData(currentProject, virtualFile) : null;
+        if (fileData == null && (virtualFile.getLength() > PluginSettings.getInstance().streamingScanThreshold
+                || SingleRootFileViewProvider.isTooLargeForIntelligence(virtualFile))) {
+            try {
+                fileData = MDStreamScanner.scan(virtualFile);
+            } catch (IOException e) {
+                logger.warn("Could not read " + virtualFile.getPath(), e);
+                return null;
+            }
+            PluginMetrics.getInstance(currentProject).counter("markdown.scan.parsed").increment();
+        }
+        if (fileData == null) {
+            PsiFile psiFile = PsiManager.getInstance(currentProject).findFile(virtualFile);
+            if (psiFile == null) {
+                return null;
+            }
+            fileData = MDFileScanner.scan(psiFile);
+            PluginMetrics.getInstance(currentProject).counter("markdown.scan.parsed").increment();
+        }
+
+        List<String> urls = fileData.getUrls();
+        List<String> repoReferences = fileData.getRepoReferences();
+        String[] links = new String[urls.size() + repoReferences.size()];
+        BitSet invalid = new BitSet();
+
+        // URLs not checked yet are valid until the checker reports them
+        UrlChecker urlChecker = UrlChecker.getInstance(currentProject);
+        int index = 0;
+        for (String url : urls) {
+            links[index] = FileLinks.intern(url);
+            if (!urlChecker.isValid(url, virtualFile)) {
+                invalid.set(index);
+            }
+            index++;
+        }
+
+        // Check whether the internal links are valid, registering them again with the resolver
+        LinkResolver.getInstance(currentProject).forget(virtualFile);
+        for (String reference : repoReferences) {
+            links[index] = FileLinks.intern(reference);
+            if (!checkFileValidity(currentProject, virtualFile, reference)) {
+                invalid.set(index);
+            }
+            index++;
+        }
+        return new MDFileStatistics(modificationStamp, fileData.getNoLines(), fileData.getNoHeaders(),
+                new FileLinks(links, urls.size(), invalid));
+    }
+
+    /**
+     * Adds the statistics of a file to the totals.
+     * @param fileResult statistics of the file
+     */
+    private void add(MDFileStatistics fileResult) {
+        noFiles++;
+        noLinks += fileResult.getNoLinks();
+        noRepoLinks += fileResult.getNoRepoLinks();
+        noUrls += fileResult.getNoUrls();
+        noLines += fileResult.getNoLines();
+        noHeaders += fileResult.getNoHeaders();
+        // counts numbers of files with links
+        if (fileResult.hasLinks()) { noFilesLinks++; }
+    }
+
+    /**
+     * Subtracts the statistics of a file from the totals.
+     * @param fileResult statistics of the file
+     */
+    private void remove(MDFileStatistics fileResult) {
+        noFiles--;
+        noLinks -= fileResult.getNoLinks();
+        noRepoLinks -= fileResult.getNoRepoLinks();
+        noUrls -= fileResult.getNoUrls();
+        noLines -= fileResult.getNoLines();
+        noHeaders -= fileResult.getNoHeaders();
+        if (fileResult.hasLinks()) { noFilesLinks--; }
+    }
+
+    /**
+     * Gets the modification stamp of a file, taking unsaved changes into account.
+     * @param virtualFile the file
+     * @return modification stamp of the document if it is loaded, of the file otherwise
+     */
+    private static long getModificationStamp(VirtualFile virtualFile) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(virtualFile);
+        return document != null ? document.getModificationStamp() : virtualFile.getModificationStamp();
+    }
 
     /**
      * Helper function that checks the validity of a path inside the project
      *
      * @param project project in which to search the path
-     * @param pathString the relative path of the file to look for
-     * @return
+     * @param linkingFile the file containing the link
+     * @param pathString the path of the file to look for, relative to the linking file
+     * @return true if the file exists
      */
-    private static boolean checkFileValidity(Project project, String pathString) {
-        final Path path = Paths.get(project.getBasePath(), pathString);
-        return Files.exists(path);
+    private static boolean checkFileValidity(Project project, VirtualFile linkingFile, String pathString) {
+        return LinkResolver.getInstance(project).exists(linkingFile, pathString);
     }
 
     /**
@@ -185,6 +435,8 @@ public class MDStatistics {
         noUrls = 0;
         noLines = 0;
         noHeaders = 0;
+        noVisitedFiles = 0;
         values = new HashMap<>();
+        fileStatistics = new HashMap<>();
     }
 }
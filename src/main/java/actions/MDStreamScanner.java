@@ -0,0 +1,524 @@
+package actions;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.text.CharSequenceReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the raw data of a MD file without building its psi tree, for files too large to parse.
+ * The text is read in fixed-size chunks and split into lines, each line going through a state machine
+ * tracking fenced and indented code blocks, then through a scanner finding ATX headers, inline links
+ * and images, autolinks, bare URLs and reference definitions. Links are classified like MDFileScanner does.
+ * Only the current chunk and line are held in memory; lines longer than MAX_LINE_LENGTH are
+ * counted but only their beginning is scanned, and links spanning several lines are not found.
+ */
+public final class MDStreamScanner {
+
+    static final int CHUNK_SIZE = 8192;
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final String[] URL_PREFIXES = {"http://", "https://", "ftp://", "www."};
+
+    private MDStreamScanner() {}
+
+    /**
+     * Scans a file, from its document if it has unsaved changes and from the VFS otherwise.
+     * @param file the file to scan
+     * @return the data of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static MDFileData scan(VirtualFile file) throws IOException {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document != null) {
+            return scan(new CharSequenceReader(document.getImmutableCharSequence()));
+        }
+        try (Reader reader = new InputStreamReader(file.getInputStream(), file.getCharset())) {
+            return scan(reader);
+        }
+    }
+
+    /**
+     * Scans a text read from a reader.
+     * @param reader the reader of the text, left open
+     * @return the data of the text
+     * @throws IOException if the text cannot be read
+     */
+    public static MDFileData scan(Reader reader) throws IOException {
+        Scanner scanner = new Scanner();
+        char[] chunk = new char[CHUNK_SIZE];
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            scanner.feed(chunk, read);
+        }
+        return scanner.finish();
+    }
+
+    /**
+     * State of a scan, fed with the chunks of the text.
+     */
+    private static class Scanner {
+
+        private final List<String> urls = new ArrayList<>();
+        private final List<String> repoReferences = new ArrayList<>();
+        private int noHeaders;
+
+        private final StringBuilder line = new StringBuilder();
+        private boolean previousWasCarriageReturn;
+
+        // line count with the semantics of LineCounter
+        private int lines;
+        private int pendingLineBreaks;
+        private boolean sawText;
+
+        // block state
+        private boolean inFence;
+        private char fenceChar;
+        private int fenceLength;
+        private boolean inIndentedCode;
+        private boolean previousBlank = true;
+
+        void feed(char[] chunk, int length) {
+            for (int i = 0; i < length; i++) {
+                char c = chunk[i];
+                if (c == '\n') {
+                    if (!previousWasCarriageReturn) {
+                        endLine();
+                    }
+                    previousWasCarriageReturn = false;
+                } else if (c == '\r') {
+                    endLine();
+                    previousWasCarriageReturn = true;
+                } else {
+                    previousWasCarriageReturn = false;
+                    if (pendingLineBreaks > 0) {
+                        lines += pendingLineBreaks;
+                        pendingLineBreaks = 0;
+                    }
+                    sawText = true;
+                    if (line.length() < MAX_LINE_LENGTH) {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+
+        private void endLine() {
+            pendingLineBreaks++;
+            processLine(line);
+            line.setLength(0);
+        }
+
+        MDFileData finish() {
+            if (line.length() > 0) {
+                processLine(line);
+            }
+            int noLines;
+            if (sawText) {
+                noLines = lines + 1;
+            } else {
+                noLines = pendingLineBreaks == 0 ? 1 : 0;
+            }
+            return new MDFileData(noLines, noHeaders, urls, repoReferences);
+        }
+
+        private void processLine(CharSequence text) {
+            int length = text.length();
+            int start = 0;
+            int indent = 0;
+            while (start < length && (text.charAt(start) == ' ' || text.charAt(start) == '\t')) {
+                indent += text.charAt(start) == '\t' ? 4 - indent % 4 : 1;
+                start++;
+            }
+            boolean blank = start == length;
+
+            if (inFence) {
+                if (indent < 4 && isFence(text, start, fenceChar, fenceLength) && isBlank(text, start + runLength(text, start))) {
+                    inFence = false;
+                }
+                return;
+            }
+            if (indent < 4 && (isFence(text, start, '`', 3) || isFence(text, start, '~', 3))) {
+                inFence = true;
+                fenceChar = text.charAt(start);
+                fenceLength = runLength(text, start);
+                previousBlank = false;
+                inIndentedCode = false;
+                return;
+            }
+            if (blank) {
+                previousBlank = true;
+                return;
+            }
+            if (indent >= 4 && (previousBlank || inIndentedCode)) {
+                inIndentedCode = true;
+                previousBlank = false;
+                return;
+            }
+            inIndentedCode = false;
+            previousBlank = false;
+
+            if (indent < 4 && text.charAt(start) == '#') {
+                int level = runLength(text, start);
+                int end = start + level;
+                if (level <= 6 && (end == length || text.charAt(end) == ' ' || text.charAt(end) == '\t')) {
+                    noHeaders++;
+                }
+            } else if (indent < 4 && text.charAt(start) == '[' && scanReferenceDefinition(text, start)) {
+                return;
+            }
+            scanInline(text, start, length);
+        }
+
+        /**
+         * Scans a reference definition, {@code [label]: destination}.
+         * @return true if the line is a reference definition
+         */
+        private boolean scanReferenceDefinition(CharSequence text, int start) {
+            int close = findClosingBracket(text, start, text.length());
+            if (close < 0 || close + 1 >= text.length() || text.charAt(close + 1) != ':') {
+                return false;
+            }
+            int destination = skipSpaces(text, close + 2);
+            int end = destinationEnd(text, destination, text.length());
+            if (end <= destination) {
+                return false;
+            }
+            addDestination(text.subSequence(destination, end).toString());
+            return true;
+        }
+
+        private void scanInline(CharSequence text, int from, int to) {
+            int i = from;
+            while (i < to) {
+                char c = text.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == '`') {
+                    int run = runLength(text, i);
+                    int close = findBacktickRun(text, i + run, to, run);
+                    i = close < 0 ? i + run : close + run;
+                } else if (c == '<') {
+                    int end = autolinkEnd(text, i, to);
+                    if (end > 0) {
+                        urls.add(text.subSequence(i, end).toString());
+                        i = end;
+                    } else {
+                        i++;
+                    }
+                } else if (c == '[') {
+                    i = scanLink(text, i, to);
+                } else if (isUrlStart(text, i)) {
+                    int end = bareUrlEnd(text, i, to);
+                    if (end > i) {
+                        urls.add(text.subSequence(i, end).toString());
+                        i = end;
+                    } else {
+                        i++;
+                    }
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        /**
+         * Scans a link or image starting at an opening bracket.
+         * @return the index to continue scanning from
+         */
+        private int scanLink(CharSequence text, int open, int to) {
+            int close = findClosingBracket(text, open, to);
+            if (close < 0) {
+                return open + 1;
+            }
+            if (close + 1 >= to || text.charAt(close + 1) != '(') {
+                // reference or shortcut link, its text is scanned as usual
+                return open + 1;
+            }
+            int destination = skipSpaces(text, close + 2);
+            int end = destinationEnd(text, destination, to);
+            if (end < destination) {
+                return open + 1;
+            }
+            int afterDestination = skipSpaces(text, end);
+            if (afterDestination < to && text.charAt(afterDestination) != ')') {
+                afterDestination = skipTitle(text, afterDestination, to);
+            }
+            if (afterDestination >= to || text.charAt(afterDestination) != ')') {
+                return open + 1;
+            }
+
+            // the text of the link may hold autolinks and bare URLs, but no other link
+            scanInline(text, open + 1, close);
+            if (end > destination) {
+                addDestination(text.subSequence(destination, end).toString());
+            }
+            return afterDestination + 1;
+        }
+
+        /**
+         * Classifies a link destination: URLs are recognised by the GFM autolink extension
+         * or written between angle brackets, anything else is a repository reference.
+         */
+        private void addDestination(String destination) {
+            if (destination.charAt(0) == '<' || isUrlStart(destination, 0)) {
+                urls.add(destination);
+            } else {
+                repoReferences.add(destination);
+            }
+        }
+    }
+
+    private static boolean isFence(CharSequence text, int start, char fence, int minimum) {
+        return start < text.length() && text.charAt(start) == fence && runLength(text, start) >= minimum;
+    }
+
+    private static int runLength(CharSequence text, int start) {
+        char c = text.charAt(start);
+        int end = start;
+        while (end < text.length() && text.charAt(end) == c) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private static boolean isBlank(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) != ' ' && text.charAt(i) != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int findBacktickRun(CharSequence text, int from, int to, int run) {
+        int i = from;
+        while (i < to) {
+            if (text.charAt(i) == '`') {
+                int length = runLength(text, i);
+                if (length == run) {
+                    return i;
+                }
+                i += length;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the bracket closing the one at {@code open}, skipping escaped brackets and code spans.
+     * @return the index of the closing bracket, -1 if there is none before {@code to}
+     */
+    private static int findClosingBracket(CharSequence text, int open, int to) {
+        int depth = 0;
+        int i = open;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '`') {
+                int run = runLength(text, i);
+                int close = findBacktickRun(text, i + run, to, run);
+                i = close < 0 ? i + run : close + run;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of a link destination, written between angle brackets or as a run
+     * of non-space characters with balanced parentheses.
+     * @return the index after the destination, {@code from} for an empty destination, -1 if malformed
+     */
+    private static int destinationEnd(CharSequence text, int from, int to) {
+        if (from < to && text.charAt(from) == '<') {
+            for (int i = from + 1; i < to; i++) {
+                char c = text.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '>') {
+                    return i + 1;
+                } else if (c == '<') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        int depth = 0;
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < to) {
+                i += 2;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || Character.isISOControl(c)) {
+                break;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+            i++;
+        }
+        return depth == 0 ? i : -1;
+    }
+
+    /**
+     * Skips a link title, between quotes or parentheses.
+     * @return the index after the title and the following spaces, {@code from} if there is no title
+     */
+    private static int skipTitle(CharSequence text, int from, int to) {
+        char open = text.charAt(from);
+        char close = open == '(' ? ')' : open;
+        if (open != '"' && open != '\'' && open != '(') {
+            return from;
+        }
+        for (int i = from + 1; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == close) {
+                return skipSpaces(text, i + 1);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Finds the end of an autolink, {@code <scheme:target>} or {@code <user@host>}.
+     * @return the index after the closing angle bracket, -1 if there is no autolink
+     */
+    private static int autolinkEnd(CharSequence text, int open, int to) {
+        int close = -1;
+        for (int i = open + 1; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '>') {
+                close = i;
+                break;
+            }
+            if (c == '<' || c == ' ' || Character.isISOControl(c)) {
+                return -1;
+            }
+        }
+        if (close < 0) {
+            return -1;
+        }
+
+        // scheme of 2 to 32 characters followed by a colon
+        int start = open + 1;
+        if (start < close && Character.isLetter(text.charAt(start))) {
+            int end = start + 1;
+            while (end < close && isSchemeChar(text.charAt(end))) {
+                end++;
+            }
+            if (end < close && text.charAt(end) == ':' && end - start >= 2 && end - start <= 32) {
+                return close + 1;
+            }
+        }
+
+        // email address
+        for (int i = start + 1; i < close - 1; i++) {
+            if (text.charAt(i) == '@') {
+                return close + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSchemeChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '+' || c == '.' || c == '-';
+    }
+
+    private static boolean isUrlStart(CharSequence text, int index) {
+        char first = Character.toLowerCase(text.charAt(index));
+        if (first != 'h' && first != 'f' && first != 'w') {
+            return false;
+        }
+        if (index > 0) {
+            char previous = text.charAt(index - 1);
+            if (!Character.isWhitespace(previous) && "*_~(".indexOf(previous) < 0) {
+                return false;
+            }
+        }
+        for (String prefix : URL_PREFIXES) {
+            if (regionMatches(text, index, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int index, String prefix) {
+        if (index + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(text.charAt(index + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the end of a bare URL: it stops at a space or an angle bracket, and trailing
+     * punctuation and unbalanced closing parentheses are not part of it.
+     */
+    private static int bareUrlEnd(CharSequence text, int from, int to) {
+        int end = from;
+        while (end < to && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '<') {
+            end++;
+        }
+        while (end > from) {
+            char last = text.charAt(end - 1);
+            if ("?!.,:*_~'\"".indexOf(last) >= 0) {
+                end--;
+            } else if (last == ')' && countChar(text, from, end, ')') > countChar(text, from, end, '(')) {
+                end--;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static int countChar(CharSequence text, int from, int to, char c) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -70,4 +70,16 @@ public class MethodStatistics {
         this.complexity = 1;
     }
 
+    /**
+     * Constructs an instance of MethodStatistics without a Psi method,
+     * for statistics computed on the light syntax tree.
+     * @param name the name of the method
+     * @param complexity the initial cyclomatic complexity
+     */
+    public MethodStatistics(String name, int complexity) {
+
+        this.name = name;
+        this.complexity = complexity;
+    }
+
 }
@@ -0,0 +1,143 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Collects the files reported by PSI and VFS change events and runs a single
+ * recompute for all of them once no event arrived during the quiet period.
+ */
+public class ChangeCoalescer {
+
+    /**
+     * Default quiet period in milliseconds.
+     */
+    public static final int DEFAULT_QUIET_PERIOD = 300;
+
+    private final Alarm alarm;
+    private final int quietPeriod;
+    private final Consumer<Set<VirtualFile>> recompute;
+
+    /**
+     * Files changed since the last recompute, the most recently changed file last.
+     */
+    private Set<VirtualFile> dirtyFiles = new LinkedHashSet<>();
+
+    /**
+     * Time in nanoseconds of the first event since the last recompute, 0 if none arrived.
+     */
+    private long batchStart;
+
+    /**
+     * Time in nanoseconds of the first event of the batch being recomputed.
+     */
+    private volatile long recomputedBatchStart;
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong recomputesExecuted = new AtomicLong();
+
+    /**
+     * Constructs an instance of ChangeCoalescer.
+     * @param parent disposable whose disposal cancels pending recomputes
+     * @param threadToUse thread on which the recompute runs
+     * @param quietPeriod time in milliseconds without events after which the recompute runs
+     * @param recompute the batched recompute, receiving the files changed since the previous one
+     */
+    public ChangeCoalescer(@NotNull Disposable parent, @NotNull Alarm.ThreadToUse threadToUse,
+                           int quietPeriod, @NotNull Consumer<Set<VirtualFile>> recompute) {
+        this.alarm = new Alarm(threadToUse, parent);
+        this.quietPeriod = quietPeriod;
+        this.recompute = recompute;
+    }
+
+    /**
+     * Records a change event and postpones the recompute until the end of the quiet period.
+     * @param file the changed file, null if the event does not refer to a single file
+     */
+    public void fileChanged(@Nullable VirtualFile file) {
+        eventsReceived.incrementAndGet();
+        synchronized (this) {
+            startBatch();
+            if (file != null) {
+                dirtyFiles.remove(file);
+                dirtyFiles.add(file);
+            }
+        }
+        reschedule();
+    }
+
+    /**
+     * Records a batch of changes as a single event.
+     * @param files the changed files
+     */
+    public void filesChanged(@NotNull Collection<VirtualFile> files) {
+        eventsReceived.incrementAndGet();
+        synchronized (this) {
+            startBatch();
+            for (VirtualFile file : files) {
+                dirtyFiles.remove(file);
+                dirtyFiles.add(file);
+            }
+        }
+        reschedule();
+    }
+
+    private void startBatch() {
+        if (batchStart == 0) {
+            batchStart = System.nanoTime();
+        }
+    }
+
+    private void reschedule() {
+        alarm.cancelAllRequests();
+        alarm.addRequest(this::flush, quietPeriod);
+    }
+
+    /**
+     * Runs the recompute with the files collected so far.
+     */
+    private void flush() {
+        Set<VirtualFile> files;
+        synchronized (this) {
+            files = dirtyFiles;
+            dirtyFiles = new LinkedHashSet<>();
+            recomputedBatchStart = batchStart;
+            batchStart = 0;
+        }
+        recomputesExecuted.incrementAndGet();
+        recompute.accept(files);
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public long getRecomputesExecuted() {
+        return recomputesExecuted.get();
+    }
+
+    /**
+     * Number of changed files waiting for the next recompute.
+     */
+    public synchronized int getPendingFiles() {
+        return dirtyFiles.size();
+    }
+
+    /**
+     * Time of the first event of the batch being recomputed, to measure the latency
+     * between a change and its result. Only meaningful while the recompute runs.
+     * @return the time in nanoseconds as returned by System.nanoTime()
+     */
+    public long getBatchStart() {
+        return recomputedBatchStart;
+    }
+}
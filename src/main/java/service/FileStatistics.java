@@ -42,7 +42,6 @@ public class FileStatistics {
 
         public FileStatisticsBuilder withNewFileLength(int fileLength) {
             this.newFileLength = fileLength;
-            System.out.println("ok");
             return this;
         }
 
@@ -159,7 +158,7 @@ public class FileStatistics {
     @Transient
     private ArrayList<MethodStatistics> methods;
 
-    private FileStatistics() {}
+    FileStatistics() {}
 
     public int getNewLines() {
         return newLines;
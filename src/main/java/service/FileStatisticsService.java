@@ -0,0 +1,284 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service storing the history of the FileStatistics of the project files.
+ * The history is kept in an append-only binary store in the system directory
+ * of the IDE, instead of the project workspace. Files are identified by their path
+ * relative to the project, and the latest statistics of the recently used files
+ * are cached in memory. Saved statistics are written in batches by a StatisticsWriteQueue.
+ */
+public class FileStatisticsService implements Disposable {
+
+    private final static Logger logger = Logger.getInstance(FileStatisticsService.class);
+
+    /**
+     * Number of files whose latest statistics are cached.
+     */
+    private static final int LATEST_CACHE_SIZE = 1024;
+
+    /**
+     * Time in hours between two compactions of the store.
+     */
+    private static final long COMPACTION_PERIOD = 6;
+
+    private final Project project;
+
+    /**
+     * Latest statistics of the recently used files by key.
+     */
+    private final LatestStatisticsCache latest = new LatestStatisticsCache(LATEST_CACHE_SIZE);
+
+    /**
+     * The store, null if it could not be opened.
+     */
+    @Nullable
+    private FileStatisticsStore store;
+
+    /**
+     * The queue of the statistics to write, null if the store could not be opened.
+     */
+    @Nullable
+    private StatisticsWriteQueue writeQueue;
+
+    /**
+     * The periodic compaction of the store, null if the store could not be opened.
+     */
+    @Nullable
+    private ScheduledFuture<?> compaction;
+
+    public FileStatisticsService(Project project) {
+        this.project = project;
+        Path directory = Paths.get(PathManager.getSystemPath(), "summary-statistics");
+        try {
+            store = new FileStatisticsStore(directory, project.getLocationHash());
+        } catch (IOException e) {
+            logger.warn("Could not open the file statistics store", e);
+            return;
+        }
+        writeQueue = new StatisticsWriteQueue(this, store, StatisticsWriteQueue.DEFAULT_FLUSH_DELAY,
+                batch -> {
+                    // the queued instances hold the Psi methods, the next lookups read the records back instead
+                    List<String> keys = new ArrayList<>(batch.size());
+                    for (FileStatisticsStore.Snapshot snapshot : batch) {
+                        keys.add(snapshot.getKey());
+                    }
+                    latest.flushed(keys);
+                });
+        PluginMetrics metrics = PluginMetrics.getInstance(project);
+        metrics.gauge("statistics.queue.depth", writeQueue::getQueueDepth);
+        metrics.gauge("statistics.queue.flushes", writeQueue::getFlushes);
+        metrics.gauge("statistics.queue.lastFlushMillis", writeQueue::getLastFlushLatency);
+        metrics.gauge("statistics.queue.maxFlushMillis", writeQueue::getMaxFlushLatency);
+        compaction = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::compact, 0, COMPACTION_PERIOD, TimeUnit.HOURS);
+    }
+
+    /**
+     * Downsamples the snapshots falling out of the retention policy of the settings.
+     */
+    public void compact() {
+        if (store == null) {
+            return;
+        }
+        try {
+            int downsampled = store.compact(RetentionPolicy.fromSettings(PluginSettings.getInstance()),
+                    System.currentTimeMillis(), this::keyExists);
+            logger.info("Downsampled " + downsampled + " file statistics snapshots");
+        } catch (IOException e) {
+            logger.warn("Could not compact the file statistics store", e);
+        }
+    }
+
+    /**
+     * Checks whether a key matches an existing file, the keys of deleted files and the file names
+     * used as keys by earlier versions of the plugin do not.
+     * @param key the key of a file, see getKey
+     * @return true if the file exists
+     */
+    private boolean keyExists(@NotNull String key) {
+        try {
+            Path path = Paths.get(key);
+            if (!path.isAbsolute()) {
+                String basePath = project.getBasePath();
+                if (basePath == null) {
+                    return false;
+                }
+                path = Paths.get(basePath, key);
+            }
+            return Files.exists(path);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the key identifying a file in the history: its path relative to the project directory,
+     * or its absolute path for files outside of the project. Files without a virtual file use their name.
+     * @param psiFile the file
+     * @return the key of the file
+     */
+    @NotNull
+    public String getKey(@NotNull PsiFile psiFile) {
+        VirtualFile file = psiFile.getVirtualFile();
+        if (file == null) {
+            return psiFile.getName();
+        }
+        VirtualFile baseDir = project.getBaseDir();
+        String relativePath = baseDir == null ? null : VfsUtilCore.getRelativePath(file, baseDir);
+        return relativePath == null ? file.getPath() : relativePath;
+    }
+
+    /**
+     * Queues the statistics of a file to be appended to its history.
+     * @param key the key of the file, see getKey
+     * @param fileStatistics the statistics to save
+     */
+    public void saveStatistics(@NotNull String key, @NotNull FileStatistics fileStatistics) {
+        if (writeQueue == null) {
+            return;
+        }
+        writeQueue.add(new FileStatisticsStore.Snapshot(key, System.currentTimeMillis(), fileStatistics));
+    }
+
+    /**
+     * Gets the most recently saved statistics of a file.
+     * @param key the key of the file, see getKey
+     * @return the latest statistics, null if none was saved
+     */
+    @Nullable
+    public FileStatistics getLastStatistics(@NotNull String key) {
+        if (store == null || writeQueue == null) {
+            return null;
+        }
+        FileStatisticsStore.Snapshot pending = writeQueue.getPending(key);
+        if (pending != null) {
+            return pending.getStatistics();
+        }
+        try {
+            return latest.get(key, store::readLast);
+        } catch (IOException e) {
+            logger.warn("Could not read the statistics of " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets all the saved statistics of a file, oldest first.
+     * @param key the key of the file, see getKey
+     * @return the history of the file
+     */
+    @NotNull
+    public List<FileStatistics> getHistory(@NotNull String key) {
+        if (store == null) {
+            return Collections.emptyList();
+        }
+        flush();
+        try {
+            return store.readAll(key);
+        } catch (IOException e) {
+            logger.warn("Could not read the statistics of " + key, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets the daily or weekly aggregates of the older statistics of a file, oldest first.
+     * @param key the key of the file, see getKey
+     * @return the aggregates of the file
+     */
+    @NotNull
+    public List<StatisticsRollup> getRollups(@NotNull String key) {
+        return store == null ? Collections.emptyList() : store.readRollups(key);
+    }
+
+    /**
+     * Gets the series of the complexity, lines and methods of a file over time, oldest first.
+     * Downsampled snapshots are not part of the series, see getRollups.
+     * @param key the key of the file, see getKey
+     * @return the series of the file
+     */
+    @NotNull
+    public StatisticsSeries getSeries(@NotNull String key) {
+        if (store == null) {
+            return new StatisticsSeries(new long[0], new float[0], new int[0], new int[0]);
+        }
+        flush();
+        return store.readSeries(key);
+    }
+
+    /**
+     * Finds the files whose metric grew the most during a time window.
+     * @param metric the metric to compare
+     * @param from start of the window in milliseconds, inclusive
+     * @param to end of the window in milliseconds, inclusive
+     * @param limit maximum number of files returned
+     * @return the keys of the files with their growth, largest first
+     */
+    @NotNull
+    public List<StatisticsColumns.Growth> getTopGrowth(@NotNull StatisticsColumns.Metric metric,
+                                                       long from, long to, int limit) {
+        if (store == null) {
+            return Collections.emptyList();
+        }
+        flush();
+        return store.topGrowth(metric, from, to, limit);
+    }
+
+    /**
+     * Writes the queued statistics now.
+     */
+    public void flush() {
+        if (writeQueue != null) {
+            writeQueue.flush();
+        }
+    }
+
+    @Nullable
+    public StatisticsWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Closes the store, the write queue being a child of the service it was flushed before.
+     */
+    @Override
+    public void dispose() {
+        if (compaction != null) {
+            compaction.cancel(false);
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the file statistics store", e);
+            }
+        }
+    }
+
+    public static FileStatisticsService getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, FileStatisticsService.class);
+    }
+}
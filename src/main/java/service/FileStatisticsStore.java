@@ -0,0 +1,606 @@
+package service;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Append-only binary log of FileStatistics snapshots.
+ * Every snapshot is a fixed-size record holding the id of its key and the numeric fields
+ * of the statistics, so saving never rewrites previous records and the latest snapshot of
+ * a key is read at the offset kept in memory. Keys are stored once, in a separate file,
+ * in the order of their ids.
+ * Compaction rewrites the log keeping the snapshots retained by a RetentionPolicy,
+ * and moves the others into per-period aggregates stored in a third file.
+ * The log and the aggregates written by a compaction form a new generation, which replaces
+ * the previous one at once by rewriting a manifest holding the current generation number.
+ */
+public class FileStatisticsStore implements Closeable {
+
+    /**
+     * A snapshot waiting to be appended.
+     */
+    public static class Snapshot {
+
+        private final String key;
+        private final long timestamp;
+        private final FileStatistics statistics;
+
+        public Snapshot(@NotNull String key, long timestamp, @NotNull FileStatistics statistics) {
+            this.key = key;
+            this.timestamp = timestamp;
+            this.statistics = statistics;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public FileStatistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    private static final int MAGIC = 0x46535354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * key id, timestamp, average complexity and the eleven int fields of FileStatistics.
+     */
+    static final int RECORD_SIZE = 4 + 8 + 4 + 11 * 4;
+
+    // offsets of the fields copied to the columns and to the aggregates
+    private static final int TIMESTAMP_OFFSET = 4;
+    private static final int COMPLEXITY_OFFSET = 12;
+    private static final int LINES_OFFSET = 24;
+    private static final int METHODS_OFFSET = 40;
+
+    private final Path directory;
+    private final String name;
+    private final Path manifestFile;
+
+    /**
+     * Generation of the log and aggregates files, incremented by each compaction.
+     */
+    private int generation;
+    private Path logFile;
+    private Path rollupFile;
+    private FileChannel log;
+    private final DataOutputStream keysOutput;
+
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+
+    /**
+     * Offset of the latest record of each key, indexed by key id.
+     */
+    private long[] lastOffsets = new long[16];
+
+    /**
+     * Downsampled snapshots of each key, by start of period.
+     */
+    private Map<Integer, TreeMap<Long, StatisticsRollup>> rollups = new HashMap<>();
+
+    /**
+     * Columnar copy of the records of the log, for trend queries.
+     */
+    private final StatisticsColumns columns = new StatisticsColumns();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    /**
+     * Opens the store, creating its files if they do not exist.
+     * A record left incomplete by an interrupted write is discarded.
+     * @param directory the directory holding the files of the store
+     * @param name the name of the files of the store, without extension
+     * @throws IOException if the files cannot be read or have an unknown format
+     */
+    public FileStatisticsStore(@NotNull Path directory, @NotNull String name) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.name = name;
+        Path keysFile = directory.resolve(name + ".keys");
+        manifestFile = directory.resolve(name + ".manifest");
+        generation = readManifest();
+        logFile = logFile(generation);
+        rollupFile = rollupFile(generation);
+        // files of a compaction interrupted before its manifest was written, or before the previous files were deleted
+        Files.deleteIfExists(logFile(generation + 1));
+        Files.deleteIfExists(rollupFile(generation + 1));
+        if (generation > 0) {
+            Files.deleteIfExists(logFile(generation - 1));
+            Files.deleteIfExists(rollupFile(generation - 1));
+        }
+        readKeys(keysFile);
+        readRollups();
+        keysOutput = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(keysFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        log = openLog(logFile);
+        readLog();
+    }
+
+    /**
+     * The files of the first generation have no generation number, as the ones of stores created before compaction.
+     */
+    private Path logFile(int generation) {
+        return directory.resolve(generation == 0 ? name + ".dat" : name + "." + generation + ".dat");
+    }
+
+    private Path rollupFile(int generation) {
+        return directory.resolve(generation == 0 ? name + ".rollup" : name + "." + generation + ".rollup");
+    }
+
+    private int readManifest() throws IOException {
+        if (!Files.exists(manifestFile)) {
+            return 0;
+        }
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(manifestFile))) {
+            return input.readInt();
+        }
+    }
+
+    /**
+     * Replaces the manifest at once, switching the store to the files of a generation.
+     */
+    private void writeManifest(int generation) throws IOException {
+        Path manifestTemp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(manifestTemp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.allocate(4);
+            content.putInt(generation).flip();
+            channel.write(content, 0);
+            channel.force(true);
+        }
+        Files.move(manifestTemp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static FileChannel openLog(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void readKeys(Path keysFile) throws IOException {
+        if (!Files.exists(keysFile)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(keysFile)))) {
+            while (true) {
+                String key;
+                try {
+                    key = input.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                keyIds.put(key, keys.size());
+                keys.add(key);
+            }
+        }
+        ensureCapacity(keys.size());
+    }
+
+    private void readRollups() throws IOException {
+        if (!Files.exists(rollupFile)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(rollupFile)))) {
+            while (true) {
+                int id;
+                try {
+                    id = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                StatisticsRollup rollup = new StatisticsRollup(input.readLong(), input.readInt(),
+                        input.readFloat(), input.readFloat(), input.readFloat(),
+                        input.readInt(), input.readInt(), input.readFloat(),
+                        input.readInt(), input.readInt(), input.readFloat());
+                rollups.computeIfAbsent(id, key -> new TreeMap<>()).put(rollup.getPeriodStart(), rollup);
+            }
+        }
+    }
+
+    private void readLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (log.size() < HEADER_SIZE) {
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            log.truncate(0);
+            log.write(header, 0);
+            return;
+        }
+        log.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Unknown statistics store format");
+        }
+
+        long end = HEADER_SIZE + (log.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+        log.truncate(end);
+        indexLog();
+    }
+
+    /**
+     * Rebuilds the offsets of the latest records and the columns from the log.
+     */
+    private void indexLog() throws IOException {
+        Arrays.fill(lastOffsets, 0);
+        columns.clear();
+        long end = log.size();
+        for (long offset = HEADER_SIZE; offset < end; offset += RECORD_SIZE) {
+            buffer.clear();
+            log.read(buffer, offset);
+            int id = buffer.getInt(0);
+            if (id >= 0 && id < keys.size()) {
+                lastOffsets[id] = offset;
+                addToColumns(id, buffer, 0);
+            }
+        }
+    }
+
+    /**
+     * Adds a record to the columns.
+     * @param records the buffer holding the record
+     * @param base the index of the record in the buffer
+     */
+    private void addToColumns(int id, ByteBuffer records, int base) {
+        columns.add(id, records.getLong(base + TIMESTAMP_OFFSET), records.getFloat(base + COMPLEXITY_OFFSET),
+                records.getInt(base + LINES_OFFSET), records.getInt(base + METHODS_OFFSET));
+    }
+
+    /**
+     * Appends a snapshot of the statistics of a key.
+     * @param key the key of the file the statistics belong to
+     * @param timestamp the time the snapshot was taken, in milliseconds
+     * @param statistics the statistics to append
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(@NotNull String key, long timestamp, @NotNull FileStatistics statistics)
+            throws IOException {
+        int id = keyId(key);
+        long offset = log.size();
+        buffer.clear();
+        buffer.putInt(id).putLong(timestamp);
+        write(statistics, buffer);
+        buffer.flip();
+        log.write(buffer, offset);
+        lastOffsets[id] = offset;
+        addToColumns(id, buffer, 0);
+    }
+
+    /**
+     * Appends several snapshots with a single write.
+     * @param snapshots the snapshots to append, oldest first
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void appendAll(@NotNull List<Snapshot> snapshots) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(snapshots.size() * RECORD_SIZE);
+        for (Snapshot snapshot : snapshots) {
+            batch.putInt(keyId(snapshot.key)).putLong(snapshot.timestamp);
+            write(snapshot.statistics, batch);
+        }
+        batch.flip();
+        long offset = log.size();
+        while (batch.hasRemaining()) {
+            log.write(batch, offset + batch.position());
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            int id = batch.getInt(i * RECORD_SIZE);
+            lastOffsets[id] = offset + i * RECORD_SIZE;
+            addToColumns(id, batch, i * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Reads the latest snapshot of a key.
+     * @param key the key of the file
+     * @return the latest statistics, null if none was saved
+     * @throws IOException if the record cannot be read
+     */
+    @Nullable
+    public synchronized FileStatistics readLast(@NotNull String key) throws IOException {
+        Integer id = keyIds.get(key);
+        if (id == null || lastOffsets[id] == 0) {
+            return null;
+        }
+        return readAt(lastOffsets[id], key);
+    }
+
+    /**
+     * Reads all the snapshots of a key, oldest first.
+     * This scans the whole log.
+     * @param key the key of the file
+     * @return the statistics of the key
+     * @throws IOException if the log cannot be read
+     */
+    @NotNull
+    public synchronized List<FileStatistics> readAll(@NotNull String key) throws IOException {
+        List<FileStatistics> history = new ArrayList<>();
+        Integer id = keyIds.get(key);
+        if (id == null) {
+            return history;
+        }
+        long last = lastOffsets[id];
+        for (long offset = HEADER_SIZE; offset <= last; offset += RECORD_SIZE) {
+            buffer.clear();
+            log.read(buffer, offset);
+            if (buffer.getInt(0) == id) {
+                history.add(readAt(offset, key));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Reads the aggregates of the downsampled snapshots of a key, oldest first.
+     * @param key the key of the file
+     * @return the aggregates of the key
+     */
+    @NotNull
+    public synchronized List<StatisticsRollup> readRollups(@NotNull String key) {
+        Integer id = keyIds.get(key);
+        if (id == null || !rollups.containsKey(id)) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(rollups.get(id).values());
+    }
+
+    /**
+     * Rewrites the log keeping only the snapshots retained by a policy,
+     * the others are merged into the aggregates of their period.
+     * The snapshots and aggregates of the keys whose history is not retained anymore are dropped.
+     * The new log and aggregates are written as the next generation, and only replace the current ones
+     * once both are complete, so an interrupted compaction never counts a snapshot twice.
+     * @param policy the retention policy
+     * @param now the current time
+     * @param keyExists whether a key matches an existing file
+     * @return the number of downsampled or dropped snapshots
+     * @throws IOException if the store cannot be rewritten
+     */
+    public synchronized int compact(@NotNull RetentionPolicy policy, long now, @NotNull Predicate<String> keyExists)
+            throws IOException {
+        // counts the snapshots of each key, to know how many newer snapshots each one has
+        int[] remaining = new int[keys.size()];
+        long[] latest = new long[keys.size()];
+        long end = log.size();
+        for (long offset = HEADER_SIZE; offset < end; offset += RECORD_SIZE) {
+            buffer.clear();
+            log.read(buffer, offset);
+            int id = buffer.getInt(0);
+            if (id >= 0 && id < remaining.length) {
+                remaining[id]++;
+                latest[id] = Math.max(latest[id], buffer.getLong(TIMESTAMP_OFFSET));
+            }
+        }
+        for (Map.Entry<Integer, TreeMap<Long, StatisticsRollup>> entry : rollups.entrySet()) {
+            int id = entry.getKey();
+            if (id >= 0 && id < latest.length && !entry.getValue().isEmpty()) {
+                long periodStart = entry.getValue().lastKey();
+                latest[id] = Math.max(latest[id], periodStart);
+            }
+        }
+
+        // keys whose whole history is dropped
+        boolean[] dropped = new boolean[keys.size()];
+        boolean anyDropped = false;
+        for (int id = 0; id < dropped.length; id++) {
+            if ((remaining[id] > 0 || rollups.containsKey(id))
+                    && !policy.retainsKey(latest[id], keyExists.test(keys.get(id)), now)) {
+                dropped[id] = true;
+                anyDropped = true;
+            }
+        }
+
+        // the aggregates are merged into a copy, kept only once the new generation is in place
+        Map<Integer, TreeMap<Long, StatisticsRollup>> compactedRollups = new HashMap<>();
+        for (Map.Entry<Integer, TreeMap<Long, StatisticsRollup>> entry : rollups.entrySet()) {
+            int id = entry.getKey();
+            if (id < 0 || id >= dropped.length || !dropped[id]) {
+                compactedRollups.put(id, new TreeMap<>(entry.getValue()));
+            }
+        }
+
+        int nextGeneration = generation + 1;
+        Path compactedFile = logFile(nextGeneration);
+        Path compactedRollupFile = rollupFile(nextGeneration);
+        int downsampled = 0;
+        long position = HEADER_SIZE;
+        try (FileChannel compacted = FileChannel.open(compactedFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            compacted.write(header, 0);
+
+            for (long offset = HEADER_SIZE; offset < end; offset += RECORD_SIZE) {
+                buffer.clear();
+                log.read(buffer, offset);
+                int id = buffer.getInt(0);
+                if (id < 0 || id >= remaining.length) {
+                    continue;
+                }
+                if (dropped[id]) {
+                    downsampled++;
+                    continue;
+                }
+                long timestamp = buffer.getLong(TIMESTAMP_OFFSET);
+                if (policy.retains(timestamp, --remaining[id], now)) {
+                    buffer.flip();
+                    compacted.write(buffer, position);
+                    position += RECORD_SIZE;
+                } else {
+                    long periodStart = policy.periodStart(timestamp);
+                    StatisticsRollup rollup = StatisticsRollup.of(periodStart, buffer.getFloat(COMPLEXITY_OFFSET),
+                            buffer.getInt(LINES_OFFSET), buffer.getInt(METHODS_OFFSET));
+                    compactedRollups.computeIfAbsent(id, key -> new TreeMap<>())
+                            .merge(periodStart, rollup, StatisticsRollup::merge);
+                    downsampled++;
+                }
+            }
+            compacted.force(true);
+        }
+
+        if (position == end && !anyDropped) {
+            Files.delete(compactedFile);
+            return 0;
+        }
+        try {
+            writeRollups(compactedRollups, compactedRollupFile);
+            writeManifest(nextGeneration);
+        } catch (IOException e) {
+            Files.deleteIfExists(compactedFile);
+            Files.deleteIfExists(compactedRollupFile);
+            throw e;
+        }
+
+        // the new generation is in place, the files of the previous one are not used anymore
+        Path previousLog = logFile;
+        Path previousRollups = rollupFile;
+        log.close();
+        generation = nextGeneration;
+        logFile = compactedFile;
+        rollupFile = compactedRollupFile;
+        rollups = compactedRollups;
+        log = openLog(logFile);
+        indexLog();
+        Files.deleteIfExists(previousLog);
+        Files.deleteIfExists(previousRollups);
+        return downsampled;
+    }
+
+    private static void writeRollups(Map<Integer, TreeMap<Long, StatisticsRollup>> rollups, Path file)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Map.Entry<Integer, TreeMap<Long, StatisticsRollup>> entry : rollups.entrySet()) {
+                for (StatisticsRollup rollup : entry.getValue().values()) {
+                    output.writeInt(entry.getKey());
+                    output.writeLong(rollup.getPeriodStart());
+                    output.writeInt(rollup.getCount());
+                    output.writeFloat(rollup.getMinComplexity());
+                    output.writeFloat(rollup.getMaxComplexity());
+                    output.writeFloat(rollup.getAverageComplexity());
+                    output.writeInt(rollup.getMinLines());
+                    output.writeInt(rollup.getMaxLines());
+                    output.writeFloat(rollup.getAverageLines());
+                    output.writeInt(rollup.getMinMethods());
+                    output.writeInt(rollup.getMaxMethods());
+                    output.writeFloat(rollup.getAverageMethods());
+                }
+            }
+            output.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Gets the series of the snapshots of a key kept at full resolution, oldest first.
+     * @param key the key of the file
+     * @return the series of the key
+     */
+    @NotNull
+    public synchronized StatisticsSeries readSeries(@NotNull String key) {
+        Integer id = keyIds.get(key);
+        if (id == null) {
+            return StatisticsSeries.EMPTY;
+        }
+        return columns.series(id);
+    }
+
+    /**
+     * Finds the keys whose metric grew the most during a time window.
+     * @param metric the metric to compare
+     * @param from start of the window, inclusive
+     * @param to end of the window, inclusive
+     * @param limit maximum number of keys returned
+     * @return the keys with the largest growth, largest first
+     */
+    @NotNull
+    public synchronized List<StatisticsColumns.Growth> topGrowth(@NotNull StatisticsColumns.Metric metric,
+                                                                 long from, long to, int limit) {
+        return columns.topGrowth(metric, from, to, limit, keys);
+    }
+
+    private FileStatistics readAt(long offset, String key) throws IOException {
+        buffer.clear();
+        log.read(buffer, offset);
+        buffer.flip();
+        buffer.getInt();
+        buffer.getLong();
+        FileStatistics statistics = read(buffer);
+        statistics.setName(key.substring(key.lastIndexOf('/') + 1));
+        return statistics;
+    }
+
+    private int keyId(String key) throws IOException {
+        Integer id = keyIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        keysOutput.writeUTF(key);
+        keysOutput.flush();
+        id = keys.size();
+        keyIds.put(key, id);
+        keys.add(key);
+        ensureCapacity(keys.size());
+        return id;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > lastOffsets.length) {
+            long[] offsets = new long[Math.max(size, lastOffsets.length * 2)];
+            System.arraycopy(lastOffsets, 0, offsets, 0, lastOffsets.length);
+            lastOffsets = offsets;
+        }
+    }
+
+    private static void write(FileStatistics statistics, ByteBuffer buffer) {
+        buffer.putFloat(statistics.getAverageComplexity())
+                .putInt(statistics.getConstructors())
+                .putInt(statistics.getFileLength())
+                .putInt(statistics.getLines())
+                .putInt(statistics.getPublicMethods())
+                .putInt(statistics.getPrivateMethods())
+                .putInt(statistics.getStaticMethods())
+                .putInt(statistics.getTotalMethods())
+                .putInt(statistics.getVoidMethods())
+                .putInt(statistics.getNewLines())
+                .putInt(statistics.getNewMethods())
+                .putInt(statistics.getNewFileLength());
+    }
+
+    private static FileStatistics read(ByteBuffer buffer) {
+        FileStatistics statistics = new FileStatistics();
+        statistics.setAverageComplexity(buffer.getFloat());
+        statistics.setConstructors(buffer.getInt());
+        statistics.setFileLength(buffer.getInt());
+        statistics.setLines(buffer.getInt());
+        statistics.setPublicMethods(buffer.getInt());
+        statistics.setPrivateMethods(buffer.getInt());
+        statistics.setStaticMethods(buffer.getInt());
+        statistics.setTotalMethods(buffer.getInt());
+        statistics.setVoidMethods(buffer.getInt());
+        statistics.setNewLines(buffer.getInt());
+        statistics.setNewMethods(buffer.getInt());
+        statistics.setNewFileLength(buffer.getInt());
+        return statistics;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        keysOutput.close();
+        log.close();
+    }
+}
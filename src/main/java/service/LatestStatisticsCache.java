@@ -0,0 +1,84 @@
+package service;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the latest saved statistics of the files, read back from the store.
+ * A flush invalidates the keys it wrote. A lookup which read the store while a flush completed
+ * does not cache its result, since the record it read may already be older than the flushed one.
+ */
+class LatestStatisticsCache {
+
+    /**
+     * Reads the latest statistics of a key from the store.
+     */
+    interface Reader {
+        @Nullable
+        FileStatistics read(@NotNull String key) throws IOException;
+    }
+
+    /**
+     * Cached value of a file without saved statistics.
+     */
+    private static final FileStatistics NONE = new FileStatistics();
+
+    private final Map<String, FileStatistics> latest;
+
+    /**
+     * Number of flushes so far, guarded by this.
+     */
+    private long flushes;
+
+    LatestStatisticsCache(int capacity) {
+        latest = new LinkedHashMap<String, FileStatistics>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileStatistics> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the latest statistics of a key, from the cache or from the store.
+     * The statistics queued but not written yet must be looked up before.
+     * @param key the key of the file
+     * @param reader reads the statistics from the store on a cache miss
+     * @return the latest statistics, null if none was saved
+     * @throws IOException if the store cannot be read
+     */
+    @Nullable
+    FileStatistics get(@NotNull String key, @NotNull Reader reader) throws IOException {
+        long generation;
+        synchronized (this) {
+            FileStatistics cached = latest.get(key);
+            if (cached != null) {
+                return cached == NONE ? null : cached;
+            }
+            generation = flushes;
+        }
+        FileStatistics statistics = reader.read(key);
+        synchronized (this) {
+            if (generation == flushes) {
+                latest.put(key, statistics == null ? NONE : statistics);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Invalidates the keys of a flushed batch, once it is written to the store.
+     * @param keys the keys of the batch
+     */
+    synchronized void flushed(@NotNull Collection<String> keys) {
+        flushes++;
+        for (String key : keys) {
+            latest.remove(key);
+        }
+    }
+}
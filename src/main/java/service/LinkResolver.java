@@ -0,0 +1,198 @@
+package service;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Project level cache of the existence of the files referenced by md links.
+ * Targets are looked up in the VFS relative to the linking file, and the results are kept
+ * until a VFS event creates, deletes, moves or renames the target.
+ */
+public class LinkResolver {
+
+    private final Project project;
+
+    /**
+     * Whether the target exists, by canonical target path.
+     */
+    private final Map<String, Boolean> existence = new ConcurrentHashMap<>();
+
+    /**
+     * Files linking to a target, by canonical target path.
+     */
+    private final Map<String, Set<VirtualFile>> linkingFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Canonical target paths registered by each linking file, to drop them when the file is scanned again.
+     */
+    private final Map<VirtualFile, Set<String>> linkedPaths = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Class constructor
+     * @param project current project
+     */
+    public LinkResolver(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Checks whether the target of a link exists.
+     * Relative links are resolved against the directory of the linking file,
+     * absolute ones against the project base directory. Anchors and queries are ignored.
+     * @param linkingFile the file containing the link
+     * @param link the link destination
+     * @return true if the target exists
+     */
+    public boolean exists(@NotNull VirtualFile linkingFile, @NotNull String link) {
+        String path = resolvePath(linkingFile, link);
+        if (path == null) {
+            return false;
+        }
+        linkingFiles.computeIfAbsent(path, key -> ConcurrentHashMap.newKeySet()).add(linkingFile);
+        linkedPaths.computeIfAbsent(linkingFile, key -> ConcurrentHashMap.newKeySet()).add(path);
+
+        Boolean cached = existence.get(path);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        boolean exists = LocalFileSystem.getInstance().findFileByPath(path) != null;
+        existence.put(path, exists);
+        return exists;
+    }
+
+    /**
+     * Drops the registrations of a linking file, before it is scanned again or once it is removed.
+     * Targets not linked by any file anymore are dropped from the cache.
+     * @param linkingFile the file containing the links
+     */
+    public void forget(@NotNull VirtualFile linkingFile) {
+        Set<String> paths = linkedPaths.remove(linkingFile);
+        if (paths == null) {
+            return;
+        }
+        for (String path : paths) {
+            linkingFiles.computeIfPresent(path, (key, files) -> {
+                files.remove(linkingFile);
+                if (files.isEmpty()) {
+                    existence.remove(key);
+                    return null;
+                }
+                return files;
+            });
+        }
+    }
+
+    /**
+     * Drops the cached results touched by VFS events.
+     * @param events the VFS events
+     * @return the files linking to a target whose existence may have changed
+     */
+    public Set<VirtualFile> invalidate(@NotNull List<? extends VFileEvent> events) {
+        Set<VirtualFile> affected = new HashSet<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent) {
+                invalidate(event.getPath(), ((VFileCreateEvent) event).isDirectory(), affected);
+            } else if (event instanceof VFileDeleteEvent || event instanceof VFileCopyEvent) {
+                VirtualFile file = event.getFile();
+                invalidate(event.getPath(), file == null || file.isDirectory(), affected);
+            } else if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent move = (VFileMoveEvent) event;
+                String name = move.getFile().getName();
+                boolean directory = move.getFile().isDirectory();
+                invalidate(move.getOldParent().getPath() + "/" + name, directory, affected);
+                invalidate(move.getNewParent().getPath() + "/" + name, directory, affected);
+            } else if (event instanceof VFilePropertyChangeEvent
+                    && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                VFilePropertyChangeEvent rename = (VFilePropertyChangeEvent) event;
+                VirtualFile parent = rename.getFile().getParent();
+                if (parent != null) {
+                    boolean directory = rename.getFile().isDirectory();
+                    invalidate(parent.getPath() + "/" + rename.getOldValue(), directory, affected);
+                    invalidate(parent.getPath() + "/" + rename.getNewValue(), directory, affected);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Drops the cached result of a path, and of all paths below it for a directory.
+     * @param path the path touched by an event
+     * @param directory whether the path is a directory
+     * @param affected collects the files linking to the dropped paths
+     */
+    private void invalidate(String path, boolean directory, Set<VirtualFile> affected) {
+        invalidatePath(path, affected);
+        if (directory) {
+            String prefix = path + "/";
+            for (String cachedPath : new ArrayList<>(linkingFiles.keySet())) {
+                if (cachedPath.startsWith(prefix)) {
+                    invalidatePath(cachedPath, affected);
+                }
+            }
+        }
+    }
+
+    private void invalidatePath(String path, Set<VirtualFile> affected) {
+        existence.remove(path);
+        Set<VirtualFile> files = linkingFiles.remove(path);
+        if (files != null) {
+            affected.addAll(files);
+        }
+    }
+
+    /**
+     * Resolves the path of a link target.
+     * @param linkingFile the file containing the link
+     * @param link the link destination
+     * @return the canonical path of the target, or null if it cannot be resolved
+     */
+    private String resolvePath(VirtualFile linkingFile, String link) {
+        int end = link.length();
+        int anchor = link.indexOf('#');
+        if (anchor >= 0) {
+            end = anchor;
+        }
+        int query = link.indexOf('?');
+        if (query >= 0 && query < end) {
+            end = query;
+        }
+        String target = link.substring(0, end);
+
+        if (target.isEmpty()) {
+            return linkingFile.getPath();
+        }
+        if (target.startsWith("/")) {
+            String basePath = project.getBasePath();
+            return basePath == null ? null : FileUtil.toCanonicalPath(basePath + target);
+        }
+        VirtualFile directory = linkingFile.getParent();
+        return directory == null ? null : FileUtil.toCanonicalPath(directory.getPath() + "/" + target);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public static LinkResolver getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, LinkResolver.class);
+    }
+}
@@ -1,13 +1,19 @@
 package service;
 
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.IconLoader;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowAnchor;
 import com.intellij.openapi.wm.ToolWindowManager;
@@ -18,11 +24,15 @@ import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
-import util.LinkStatistics;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import actions.FileLinks;
 import actions.MDStatistics;
+import data.SummaryData;
 import org.intellij.plugins.markdown.lang.MarkdownFileType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
 import util.DataConverter;
 import view.MDView;
 import util.SummaryView;
@@ -41,17 +51,58 @@ public class MarkdownService {
     SummaryView view;
     MDView mdView;
 
+    /**
+     * Statistics of the md files, kept between updates so only changed files are visited again.
+     */
+    private final MDStatistics mdStatistics = new MDStatistics();
+
+    /**
+     * The scan running in the background, if any.
+     */
+    private CancellablePromise<?> currentScan;
+
+    /**
+     * Batches the change events into a single update of the view.
+     */
+    private final ChangeCoalescer changeCoalescer;
+
+    private final PluginMetrics metrics;
+
+    /**
+     * Files changed since the last scan whose result was shown, guarded by this.
+     */
+    private final Set<VirtualFile> unscannedFiles = new HashSet<>();
+
+    /**
+     * Whether all md files of the project have to be scanned, e.g. because files were moved.
+     * Guarded by this, set until the first scan completed.
+     */
+    private boolean fullScanPending = true;
+
+    /**
+     * Incremented each time files to scan are added, guarded by this.
+     */
+    private long scanGeneration;
+
+    /**
+     * Time in nanoseconds of the earliest event whose changes are not shown yet, guarded by this.
+     * Only meaningful while renderPending is set.
+     */
+    private long unrenderedRequestTime;
+    private boolean renderPending;
+
     /**
      * Class constructor
      * @param project current project
      */
     public MarkdownService(Project project) {
         logger.info("Markdown service is starting");
+        metrics = PluginMetrics.getInstance(project);
         if (view == null) {
             view = new SummaryView();
         }
         if (mdView == null) {
-            mdView = new MDView();
+            mdView = new MDView(project.getBasePath());
         }
 
         // statistics window
@@ -72,56 +123,229 @@ public class MarkdownService {
         Content mdContent = contentFactory.createContent(mdView, null, true);
         mdWindow.getContentManager().addContent(mdContent);
 
+        // recompute once the changes settle down
+        changeCoalescer = new ChangeCoalescer(project, Alarm.ThreadToUse.POOLED_THREAD,
+                PluginSettings.getInstance().quietPeriod,
+                changedFiles -> scheduleScan(project, changedFiles, this.changeCoalescer.getBatchStart()));
+
+        metrics.gauge("markdown.changes.events", changeCoalescer::getEventsReceived);
+        metrics.gauge("markdown.changes.recomputes", changeCoalescer::getRecomputesExecuted);
+        metrics.gauge("markdown.changes.pending", changeCoalescer::getPendingFiles);
+        LinkResolver linkResolver = LinkResolver.getInstance(project);
+        metrics.hitRatio("markdown.links.cache", linkResolver::getHits, linkResolver::getMisses);
+        metrics.hitRatio("markdown.statistics.cache",
+                mdStatistics::getNoReusedFiles, mdStatistics::getNoVisitedFiles);
+
         // update view after vfs change
         project.getMessageBus().connect().subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
             @Override
             public void after(@NotNull List<? extends VFileEvent> events) {
-                Collection<VirtualFile> virtualFiles =
-                        FileTypeIndex.getFiles(MarkdownFileType.INSTANCE, GlobalSearchScope.projectScope(project));
-                updateView(project, virtualFiles);
+                List<VirtualFile> changedFiles = new ArrayList<>();
+                boolean structureChanged = false;
+                for (VFileEvent event : events) {
+                    VirtualFile file = event.getFile();
+                    if (file == null) {
+                        continue;
+                    }
+                    if (event instanceof VFileMoveEvent || event instanceof VFileCopyEvent
+                            || isRename(event) || file.isDirectory()) {
+                        // the md files below a directory or at a new path are found again by a full scan
+                        structureChanged |= file.isDirectory() || isMarkdown(event);
+                    } else if (isMarkdown(event)) {
+                        changedFiles.add(file);
+                    }
+                }
+
+                // files linking to created, deleted or moved files are visited again
+                Set<VirtualFile> linkingFiles = LinkResolver.getInstance(project).invalidate(events);
+                mdStatistics.invalidate(linkingFiles);
+                changedFiles.addAll(linkingFiles);
+
+                if (structureChanged) {
+                    synchronized (MarkdownService.this) {
+                        fullScanPending = true;
+                        scanGeneration++;
+                    }
+                }
+                if (structureChanged || !changedFiles.isEmpty()) {
+                    changeCoalescer.filesChanged(changedFiles);
+                }
             }
         });
 
+        // files linking to URLs found invalid are visited again
+        UrlChecker.getInstance(project).setListener(linkingFiles -> {
+            mdStatistics.invalidate(linkingFiles);
+            changeCoalescer.filesChanged(linkingFiles);
+        });
+
         // update view when there is file change
         PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeAnyChangeAbstractAdapter() {
             @Override
             protected void onChange(@Nullable PsiFile psiFile) {
-                Collection<VirtualFile> virtualFiles =
-                        FileTypeIndex.getFiles(MarkdownFileType.INSTANCE, GlobalSearchScope.projectScope(project));
-                updateView(project, virtualFiles);
+                if (psiFile != null && psiFile.getFileType() == MarkdownFileType.INSTANCE
+                        && psiFile.getVirtualFile() != null) {
+                    changeCoalescer.fileChanged(psiFile.getVirtualFile());
+                }
             }
         });
     }
 
+    private static boolean isRename(VFileEvent event) {
+        return event instanceof VFilePropertyChangeEvent
+                && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+
+    /**
+     * Checks whether an event touches an md file, by name as deleted files have no file type anymore.
+     * Renames are checked against both names.
+     * @param event the VFS event
+     * @return true if the file of the event is, or was, an md file
+     */
+    private static boolean isMarkdown(VFileEvent event) {
+        FileTypeRegistry registry = FileTypeRegistry.getInstance();
+        if (isRename(event)) {
+            VFilePropertyChangeEvent rename = (VFilePropertyChangeEvent) event;
+            return registry.getFileTypeByFileName(String.valueOf(rename.getOldValue())) == MarkdownFileType.INSTANCE
+                    || registry.getFileTypeByFileName(String.valueOf(rename.getNewValue())) == MarkdownFileType.INSTANCE;
+        }
+        VirtualFile file = event.getFile();
+        return file != null && registry.getFileTypeByFileName(file.getName()) == MarkdownFileType.INSTANCE;
+    }
+
     /**
-     * This method executes the data gathering logic and refactors the data
-     * to prepare it for being passed to he view.
-     * @return a list of SummaryData entries
+     * Update the view with all md files of the project.
+     * @param project the currently open project object
+     * @return the scan, completed once the views are updated
      */
-    public ArrayList<SummaryData> getStatistics (Project project, Collection<VirtualFile> virtualFiles) {
-        MDStatistics mdStatistics = new MDStatistics();
-        mdStatistics.updateStatistics(project, virtualFiles);
+    public CancellablePromise<?> updateView(Project project) {
+        synchronized (this) {
+            fullScanPending = true;
+        }
+        return scheduleScan(project, Collections.emptyList(), System.nanoTime());
+    }
 
-        // Convert data to summary format.
-        return DataConverter.mdStatisticsToSummaryData(mdStatistics);
+    /**
+     * Forces the given files to be visited again on the next update.
+     * @param virtualFiles files to visit again
+     */
+    public void invalidate(Collection<VirtualFile> virtualFiles) {
+        mdStatistics.invalidate(virtualFiles);
     }
 
     /**
-     * Update the view.
+     * Starts scanning the files in a background read action, cancelling the scan already running.
+     * The changed files are kept until a scan including them is shown, so the files of a cancelled
+     * scan are scanned by the one replacing it, and its request time is measured to the render of that scan.
+     * The read action waits for indexing to finish so the files can be read from the link index,
+     * it is restarted by the platform when a write action interrupts it,
+     * and only the update of the views is executed on the UI thread.
      * @param project the currently open project object
-     * @param virtualFiles collection of virtual files
+     * @param changedFiles the files changed since the last scan
+     * @param requestTime time in nanoseconds of the event requesting the scan
+     * @return the scan, completed once the views are updated
      */
-    public void updateView(Project project, Collection<VirtualFile> virtualFiles) {
-        ArrayList<SummaryData> summaries = getStatistics(project, virtualFiles);
-        view.updateModel(summaries);
-
-        MDStatistics mdStatistics = new MDStatistics();
-        mdStatistics.updateStatistics(project, virtualFiles);
-        Map<String, List<List<LinkStatistics>>> map = mdStatistics.getValues();
-        mdView.updateModel(map);
+    private synchronized CancellablePromise<?> scheduleScan(Project project, Collection<VirtualFile> changedFiles,
+                                                            long requestTime) {
+        unscannedFiles.addAll(changedFiles);
+        scanGeneration++;
+        if (!renderPending || requestTime - unrenderedRequestTime < 0) {
+            unrenderedRequestTime = requestTime;
+            renderPending = true;
+        }
+        if (currentScan != null) {
+            currentScan.cancel();
+        }
+        currentScan = ReadAction.nonBlocking(() -> scan(project))
+                .inSmartMode(project)
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), report -> {
+                    scanShown(report.generation);
+                    long start = System.nanoTime();
+                    view.updateModel(report.summaries);
+                    mdView.updateModel(report.links);
+                    metrics.timer("markdown.render").recordSince(start);
+                    metrics.timer("markdown.eventToRender").recordSince(report.requestTime);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+        return currentScan;
+    }
+
+    /**
+     * Forgets the changed files once the last scheduled scan is shown.
+     * @param generation the generation of the shown scan
+     */
+    private synchronized void scanShown(long generation) {
+        if (generation == scanGeneration) {
+            unscannedFiles.clear();
+            fullScanPending = false;
+            renderPending = false;
+        }
+    }
+
+    /**
+     * Updates the statistics and takes a copy of them that can be handed over to the UI thread.
+     * All md files of the project are scanned when a full scan is pending, only the changed ones otherwise.
+     * @param project the currently open project object
+     * @return the data to show in the views
+     */
+    private MarkdownReport scan(Project project) {
+        boolean fullScan;
+        List<VirtualFile> changedFiles;
+        long generation;
+        long requestTime;
+        synchronized (this) {
+            fullScan = fullScanPending;
+            changedFiles = new ArrayList<>(unscannedFiles);
+            generation = scanGeneration;
+            requestTime = unrenderedRequestTime;
+        }
+
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        synchronized (mdStatistics) {
+            long start = System.nanoTime();
+            mdStatistics.setParallel(PluginSettings.getInstance().parallelScan);
+            if (fullScan) {
+                mdStatistics.updateStatistics(project, FileTypeIndex.getFiles(MarkdownFileType.INSTANCE, projectScope));
+            } else {
+                mdStatistics.updateFiles(project, changedFiles, file -> file.isValid() && !file.isDirectory()
+                        && file.getFileType() == MarkdownFileType.INSTANCE && projectScope.contains(file));
+            }
+            metrics.timer("markdown.scan").recordSince(start);
+            return new MarkdownReport(
+                    DataConverter.mdStatisticsToSummaryData(mdStatistics),
+                    new HashMap<>(mdStatistics.getValues()), generation, requestTime);
+        }
+    }
+
+    public ChangeCoalescer getChangeCoalescer() {
+        return changeCoalescer;
     }
 
     public static MarkdownService getInstance(@NotNull Project project) {
         return ServiceManager.getService(project, MarkdownService.class);
     }
+
+    /**
+     * Result of a scan, passed from the background read action to the views.
+     */
+    private static class MarkdownReport {
+
+        private final ArrayList<SummaryData> summaries;
+        private final Map<String, FileLinks> links;
+        private final long generation;
+
+        /**
+         * Time in nanoseconds of the earliest event whose changes the scan shows.
+         */
+        private final long requestTime;
+
+        MarkdownReport(ArrayList<SummaryData> summaries, Map<String, FileLinks> links, long generation,
+                       long requestTime) {
+            this.summaries = summaries;
+            this.links = links;
+            this.generation = generation;
+            this.requestTime = requestTime;
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package service;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.util.text.CharArrayUtil;
+import data.MethodStatistics;
+import org.jetbrains.annotations.NotNull;
+import view.JavaRecursiveMethodVisitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the complexity of each method so that an edit only re-analyses the methods it touched.
+ * An entry is reused while the file is unmodified, or while the method keeps the same text
+ * even though its offset in the file moved. The entries are kept in the user data of the methods,
+ * and hold the complexity and the text of the method, so they are discarded together with the Psi of the methods.
+ */
+public class MethodComplexityCache {
+
+    private static final Key<Entry> COMPLEXITY = Key.create("summary.method.complexity");
+
+    private static class Entry {
+        private final long modificationStamp;
+        private final TextRange textRange;
+        private final String text;
+        private final int complexity;
+
+        private Entry(long modificationStamp, TextRange textRange, String text, int complexity) {
+            this.modificationStamp = modificationStamp;
+            this.textRange = textRange;
+            this.text = text;
+            this.complexity = complexity;
+        }
+    }
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the statistics of a method, visiting it only if it changed since the last call.
+     * Must be called inside a read action.
+     * @param method the method to get the statistics of
+     * @return the statistics of the method
+     */
+    @NotNull
+    public MethodStatistics getStatistics(@NotNull PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        long modificationStamp = file == null ? -1 : file.getModificationStamp();
+        TextRange textRange = method.getTextRange();
+
+        Entry entry = method.getUserData(COMPLEXITY);
+        if (entry != null) {
+            // the file is unchanged
+            if (entry.modificationStamp == modificationStamp && entry.textRange.equals(textRange)) {
+                hits.incrementAndGet();
+                return statistics(method, entry.complexity);
+            }
+            // the file changed elsewhere, possibly shifting the method
+            if (file != null && entry.text != null && entry.text.length() == textRange.getLength()
+                    && sameText(file, textRange, entry.text)) {
+                method.putUserData(COMPLEXITY,
+                        new Entry(modificationStamp, textRange, entry.text, entry.complexity));
+                hits.incrementAndGet();
+                return statistics(method, entry.complexity);
+            }
+        }
+
+        misses.incrementAndGet();
+        MethodStatistics statistics = new MethodStatistics(method);
+        method.accept(new JavaRecursiveMethodVisitor(statistics));
+        String text = file == null ? null : text(file, textRange);
+        method.putUserData(COMPLEXITY,
+                new Entry(modificationStamp, textRange, text, statistics.getComplexity()));
+        return statistics;
+    }
+
+    private static MethodStatistics statistics(PsiMethod method, int complexity) {
+        MethodStatistics statistics = new MethodStatistics(method);
+        statistics.setComplexity(complexity);
+        return statistics;
+    }
+
+    /**
+     * Copies the text of a method from the contents of its file.
+     * @return the text, null if the range is outside of the contents
+     */
+    private static String text(PsiFile file, TextRange textRange) {
+        CharSequence contents = file.getViewProvider().getContents();
+        if (textRange.getEndOffset() > contents.length()) {
+            return null;
+        }
+        return textRange.subSequence(contents).toString();
+    }
+
+    /**
+     * Compares the text of a method in the contents of its file with a previous text, without copying it.
+     */
+    private static boolean sameText(PsiFile file, TextRange textRange, String text) {
+        CharSequence contents = file.getViewProvider().getContents();
+        return textRange.getEndOffset() <= contents.length()
+                && CharArrayUtil.regionMatches(contents, textRange.getStartOffset(), text);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,424 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import data.SummaryData;
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Project level registry of the performance metrics of the plugin.
+ * Counters, timers and histograms are created on first use by name, gauges read
+ * counters kept elsewhere when the metrics are read. The metrics are shown in the
+ * diagnostics view, exported as JSON and published as an MXBean.
+ */
+public class PluginMetrics implements PluginMetricsMXBean, Disposable {
+
+    private final static Logger logger = Logger.getInstance(PluginMetrics.class);
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Name under which the metrics are published, null if they could not be registered.
+     */
+    private ObjectName objectName;
+
+    /**
+     * Class constructor
+     * @param project current project
+     */
+    public PluginMetrics(Project project) {
+        try {
+            objectName = new ObjectName("summary.plugin:type=PluginMetrics,project="
+                    + ObjectName.quote(project.getName() + " " + project.getLocationHash()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.warn("Could not publish the plugin metrics", e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Gets the counter of the given name, creating it if needed.
+     * @param name name of the counter
+     * @return the counter
+     */
+    public Counter counter(@NotNull String name) {
+        return get(name, Counter.class, new Counter());
+    }
+
+    /**
+     * Gets the timer of the given name, creating it if needed.
+     * @param name name of the timer
+     * @return the timer
+     */
+    public Timer timer(@NotNull String name) {
+        return get(name, Timer.class, new Timer());
+    }
+
+    /**
+     * Gets the histogram of the given name, creating it if needed.
+     * @param name name of the histogram
+     * @return the histogram
+     */
+    public Histogram histogram(@NotNull String name) {
+        return get(name, Histogram.class, new Histogram());
+    }
+
+    /**
+     * Registers a gauge reading a value kept elsewhere, replacing the gauge of the same name.
+     * @param name name of the gauge
+     * @param value supplier of the current value
+     */
+    public void gauge(@NotNull String name, @NotNull LongSupplier value) {
+        metrics.put(name, new Gauge(value));
+    }
+
+    /**
+     * Registers a gauge of the ratio of hits to lookups of a cache.
+     * @param name name of the gauge
+     * @param hits supplier of the number of hits
+     * @param misses supplier of the number of misses
+     */
+    public void hitRatio(@NotNull String name, @NotNull LongSupplier hits, @NotNull LongSupplier misses) {
+        metrics.put(name, new HitRatio(hits, misses));
+    }
+
+    private <T extends Metric> T get(String name, Class<T> type, T created) {
+        Metric metric = metrics.putIfAbsent(name, created);
+        if (metric == null) {
+            return created;
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Describes each metric in a line of the diagnostics view, sorted by name.
+     * @return a list of SummaryData entries
+     */
+    public ArrayList<SummaryData> getSummary() {
+        ArrayList<SummaryData> summary = new ArrayList<>();
+        for (Map.Entry<String, Metric> entry : new TreeMap<>(metrics).entrySet()) {
+            summary.add(new SummaryData(entry.getKey(), entry.getValue().describe()));
+        }
+        return summary;
+    }
+
+    /**
+     * The current values of the metrics, flattened to one entry per value, e.g. "markdown.scan.file.p95".
+     * @return the values by name, sorted by name
+     */
+    @Override
+    public Map<String, Double> getValues() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            for (Map.Entry<String, Double> value : entry.getValue().values().entrySet()) {
+                String key = value.getKey().isEmpty() ? entry.getKey() : entry.getKey() + "." + value.getKey();
+                values.put(key, value.getValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Exports the current values of the metrics as a JSON object with one member per metric.
+     * @return the JSON text
+     */
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder("{");
+        String separator = "\n";
+        for (Map.Entry<String, Metric> entry : new TreeMap<>(metrics).entrySet()) {
+            json.append(separator).append("  \"").append(entry.getKey()).append("\": {\"type\": \"")
+                    .append(entry.getValue().type()).append('"');
+            for (Map.Entry<String, Double> value : entry.getValue().values().entrySet()) {
+                String key = value.getKey().isEmpty() ? "value" : value.getKey();
+                json.append(", \"").append(key).append("\": ").append(format(value.getValue()));
+            }
+            json.append('}');
+            separator = ",\n";
+        }
+        return json.append("\n}\n").toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    @Override
+    public void dispose() {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Could not unpublish the plugin metrics", e);
+            }
+        }
+    }
+
+    public static PluginMetrics getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, PluginMetrics.class);
+    }
+
+    /**
+     * A named value of the registry.
+     */
+    private interface Metric {
+
+        String type();
+
+        /**
+         * The values of the metric, the empty key standing for a metric with a single value.
+         */
+        Map<String, Double> values();
+
+        String describe();
+    }
+
+    /**
+     * A monotonically increasing count of events.
+     */
+    public static class Counter implements Metric {
+
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long delta) {
+            count.add(delta);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        @Override
+        public String type() {
+            return "counter";
+        }
+
+        @Override
+        public Map<String, Double> values() {
+            return Collections.singletonMap("", (double) get());
+        }
+
+        @Override
+        public String describe() {
+            return Long.toString(get());
+        }
+    }
+
+    /**
+     * Distribution of recorded values, kept in buckets of powers of two so that
+     * recording is a few atomic increments. Percentiles are the upper bound of
+     * their bucket and so overestimate the value by at most a factor two.
+     */
+    public static class Histogram implements Metric {
+
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a value.
+         * @param value the value, negative values are counted as 0
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Approximates a percentile of the recorded values.
+         * @param percentile the percentile, between 0 and 100
+         * @return upper bound of the bucket holding the percentile, at most the maximum
+         */
+        public long getPercentile(double percentile) {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                n += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(n * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                    return Math.min(upperBound, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String type() {
+            return "histogram";
+        }
+
+        /**
+         * Scale applied to the recorded values when they are reported.
+         */
+        double scale() {
+            return 1;
+        }
+
+        @Override
+        public Map<String, Double> values() {
+            Map<String, Double> values = new LinkedHashMap<>();
+            values.put("count", (double) getCount());
+            values.put("mean", getMean() * scale());
+            values.put("p50", getPercentile(50) * scale());
+            values.put("p95", getPercentile(95) * scale());
+            values.put("max", getMax() * scale());
+            return values;
+        }
+
+        @Override
+        public String describe() {
+            return String.format(Locale.ROOT, "count %d, mean %.1f, p50 %d, p95 %d, max %d",
+                    getCount(), getMean(), getPercentile(50), getPercentile(95), getMax());
+        }
+    }
+
+    /**
+     * Histogram of durations, recorded in microseconds and reported in milliseconds.
+     */
+    public static class Timer extends Histogram {
+
+        /**
+         * Records the time elapsed since a start time.
+         * @param startNanos start time as returned by System.nanoTime()
+         */
+        public void recordSince(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        @Override
+        public String type() {
+            return "timer";
+        }
+
+        @Override
+        double scale() {
+            return 0.001;
+        }
+
+        @Override
+        public String describe() {
+            return String.format(Locale.ROOT, "count %d, mean %.2f ms, p50 %.2f ms, p95 %.2f ms, max %.2f ms",
+                    getCount(), getMean() * scale(), getPercentile(50) * scale(),
+                    getPercentile(95) * scale(), getMax() * scale());
+        }
+    }
+
+    /**
+     * A value read from elsewhere, e.g. the depth of a queue.
+     */
+    private static class Gauge implements Metric {
+
+        private final LongSupplier value;
+
+        private Gauge(LongSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public String type() {
+            return "gauge";
+        }
+
+        @Override
+        public Map<String, Double> values() {
+            return Collections.singletonMap("", (double) value.getAsLong());
+        }
+
+        @Override
+        public String describe() {
+            return Long.toString(value.getAsLong());
+        }
+    }
+
+    /**
+     * Ratio of the hits of a cache to its lookups.
+     */
+    private static class HitRatio implements Metric {
+
+        private final LongSupplier hits;
+        private final LongSupplier misses;
+
+        private HitRatio(LongSupplier hits, LongSupplier misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        @Override
+        public String type() {
+            return "ratio";
+        }
+
+        @Override
+        public Map<String, Double> values() {
+            long hitCount = hits.getAsLong();
+            long lookups = hitCount + misses.getAsLong();
+            Map<String, Double> values = new LinkedHashMap<>();
+            values.put("hits", (double) hitCount);
+            values.put("lookups", (double) lookups);
+            values.put("ratio", lookups == 0 ? 0 : (double) hitCount / lookups);
+            return values;
+        }
+
+        @Override
+        public String describe() {
+            Map<String, Double> values = values();
+            return String.format(Locale.ROOT, "%.1f %% of %d lookups",
+                    values.get("ratio") * 100, values.get("lookups").longValue());
+        }
+    }
+}
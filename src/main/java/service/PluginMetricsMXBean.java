@@ -0,0 +1,22 @@
+package service;
+
+import java.util.Map;
+
+/**
+ * Management interface of the plugin metrics, published on the platform MBean server
+ * so that they can be read from JConsole or any other JMX client.
+ */
+public interface PluginMetricsMXBean {
+
+    /**
+     * The current values of the metrics, one entry per value.
+     * @return the values by name
+     */
+    Map<String, Double> getValues();
+
+    /**
+     * The current values of the metrics as a JSON object.
+     * @return the JSON text
+     */
+    String getJson();
+}
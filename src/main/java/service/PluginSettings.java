@@ -0,0 +1,93 @@
+package service;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Application wide settings of the plugin, stored in markdownPlugin.xml.
+ */
+@State(name = "MarkdownPluginSettings", storages = @Storage("markdownPlugin.xml"))
+public class PluginSettings implements PersistentStateComponent<PluginSettings> {
+
+    /**
+     * Time in milliseconds without changes before the statistics are recomputed.
+     */
+    public int quietPeriod = ChangeCoalescer.DEFAULT_QUIET_PERIOD;
+
+    /**
+     * Whether the md files are scanned concurrently on the fork-join pool.
+     */
+    public boolean parallelScan = true;
+
+    /**
+     * Size in bytes above which md files are scanned as a stream instead of through their psi tree.
+     * Defaults to the size above which the IDE does not parse files; larger files are always streamed.
+     */
+    public long streamingScanThreshold = FileUtilRt.getUserFileSizeLimit();
+
+    /**
+     * Number of most recent snapshots of each file kept at full resolution.
+     */
+    public int retainedSnapshots = RetentionPolicy.DEFAULT_RETAINED_SNAPSHOTS;
+
+    /**
+     * Number of days during which the snapshots are kept at full resolution.
+     */
+    public int retainedDays = RetentionPolicy.DEFAULT_RETAINED_DAYS;
+
+    /**
+     * Whether older snapshots are downsampled to weekly instead of daily aggregates.
+     */
+    public boolean weeklyRollups = false;
+
+    /**
+     * Whether the external URLs of the md files are checked.
+     */
+    public boolean checkUrls = false;
+
+    /**
+     * Maximum number of concurrent URL checks to the same host.
+     */
+    public int urlCheckConnectionsPerHost = 4;
+
+    /**
+     * Connect and read timeout of a URL check in milliseconds.
+     */
+    public int urlCheckTimeout = 5000;
+
+    /**
+     * Number of hours during which the result of a URL check is reused.
+     */
+    public int urlCheckTtlHours = 24;
+
+    /**
+     * Whether the project report computes the complexity of the methods on the light syntax tree
+     * of the files instead of building their psi.
+     */
+    public boolean lightTreeProjectReport = false;
+
+    /**
+     * Whether the statistics of the md files are read from the link index when it is up to date.
+     * When disabled every changed file is scanned again, e.g. to rule out a stale index.
+     */
+    public boolean linkIndex = true;
+
+    @Override
+    public PluginSettings getState() {
+        return this;
+    }
+
+    @Override
+    public void loadState(@NotNull PluginSettings state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    public static PluginSettings getInstance() {
+        return ServiceManager.getService(PluginSettings.class);
+    }
+}
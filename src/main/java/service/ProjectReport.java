@@ -0,0 +1,105 @@
+package service;
+
+import data.MethodStatistics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable data class to hold the statistics of all the Java files of a project.
+ */
+public class ProjectReport {
+
+    /**
+     * A method together with the file declaring it.
+     */
+    public static class RankedMethod {
+
+        private final String fileName;
+        private final MethodStatistics statistics;
+
+        RankedMethod(String fileName, MethodStatistics statistics) {
+            this.fileName = fileName;
+            this.statistics = statistics;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public MethodStatistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    private final int noFiles;
+    private final long noLines;
+    private final int noMethods;
+    private final long totalComplexity;
+    private final List<RankedMethod> topMethods;
+    private final long duration;
+
+    /**
+     * Construct an instance of ProjectReport.
+     * @param noFiles number of analysed files
+     * @param noLines number of lines in the analysed files
+     * @param noMethods number of methods in the analysed files
+     * @param totalComplexity sum of the complexities of all the methods
+     * @param topMethods the most complex methods, most complex first
+     * @param duration time taken by the analysis in milliseconds
+     */
+    ProjectReport(int noFiles, long noLines, int noMethods, long totalComplexity,
+                  List<RankedMethod> topMethods, long duration) {
+        this.noFiles = noFiles;
+        this.noLines = noLines;
+        this.noMethods = noMethods;
+        this.totalComplexity = totalComplexity;
+        this.topMethods = Collections.unmodifiableList(topMethods);
+        this.duration = duration;
+    }
+
+    public int getNoFiles() {
+        return noFiles;
+    }
+
+    public long getNoLines() {
+        return noLines;
+    }
+
+    public int getNoMethods() {
+        return noMethods;
+    }
+
+    public long getTotalComplexity() {
+        return totalComplexity;
+    }
+
+    public float getAverageComplexity() {
+        return noMethods == 0 ? 0 : (float) totalComplexity / noMethods;
+    }
+
+    public List<RankedMethod> getTopMethods() {
+        return topMethods;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder()
+                .append("Files: ").append(noFiles).append('\n')
+                .append("Lines: ").append(noLines).append('\n')
+                .append("Methods: ").append(noMethods).append('\n')
+                .append("Average complexity: ").append(String.format("%.2f", getAverageComplexity())).append('\n')
+                .append("Analysed in ").append(duration).append(" ms\n\n")
+                .append("Most complex methods:\n");
+        for (RankedMethod method : topMethods) {
+            text.append(method.getStatistics().getComplexity()).append("  ")
+                    .append(method.getFileName()).append(" - ")
+                    .append(method.getStatistics().getName()).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package service;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.LanguageLevelProjectExtension;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import data.MethodStatistics;
+import org.jetbrains.annotations.NotNull;
+import service.ProjectReport.RankedMethod;
+import util.LineCounter;
+import view.LightMethodComplexity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background task computing the FileStatistics of every Java file of the project.
+ * Files are analysed concurrently, each one in its own read action, so the task
+ * can be cancelled from the progress bar and yields to write actions: the read action of a file
+ * is cancelled as soon as a write action is requested, and the file is analysed again after it.
+ * Depending on the settings, the methods are analysed on the psi or on the light syntax tree of the files.
+ */
+public class ProjectStatisticsTask extends Task.Backgroundable {
+
+    private final static Logger logger = Logger.getInstance(ProjectStatisticsTask.class);
+
+    /**
+     * Number of methods listed in the report.
+     */
+    public static final int TOP_METHODS = 10;
+
+    private static final Comparator<RankedMethod> BY_COMPLEXITY =
+            Comparator.comparingInt(method -> method.getStatistics().getComplexity());
+
+    private ProjectReport report;
+
+    // totals, guarded by this
+    private int noFiles;
+    private long noLines;
+    private int noMethods;
+    private long totalComplexity;
+    private final PriorityQueue<RankedMethod> topMethods = new PriorityQueue<>(BY_COMPLEXITY);
+
+    public ProjectStatisticsTask(@NotNull Project project) {
+        super(project, "Computing Project Summary Report", true);
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        long start = System.currentTimeMillis();
+        Project project = getProject();
+        SummaryService summaryService = SummaryService.getInstance(project);
+
+        indicator.setIndeterminate(false);
+        indicator.setText("Collecting Java files");
+        List<VirtualFile> files = ReadAction.compute(() -> new ArrayList<>(
+                FileTypeIndex.getFiles(JavaFileType.INSTANCE, GlobalSearchScope.projectScope(project))));
+
+        indicator.setText("Analysing Java files");
+        boolean lightTree = PluginSettings.getInstance().lightTreeProjectReport;
+        LanguageLevel languageLevel = LanguageLevelProjectExtension.getInstance(project).getLanguageLevel();
+        AtomicInteger done = new AtomicInteger();
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, indicator, false, false, file -> {
+            // the totals are only added to at the end of the read action, after its last cancellation check,
+            // so a file whose read action was interrupted by a write action is not counted twice
+            while (!ProgressManager.getInstance().runInReadActionWithWriteActionPriority(() -> {
+                if (file.isValid()) {
+                    if (lightTree) {
+                        addLightTree(file, languageLevel);
+                    } else {
+                        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+                        if (psiFile instanceof PsiJavaFile) {
+                            add(summaryService.buildProjectFileStatistics((PsiJavaFile) psiFile));
+                        }
+                    }
+                }
+            }, indicator)) {
+                indicator.checkCanceled();
+                ProgressIndicatorUtils.yieldToPendingWriteActions();
+            }
+            indicator.setFraction((double) done.incrementAndGet() / files.size());
+            return true;
+        });
+
+        long duration = System.currentTimeMillis() - start;
+        synchronized (this) {
+            List<RankedMethod> ranked = new ArrayList<>(topMethods);
+            ranked.sort(Collections.reverseOrder(BY_COMPLEXITY));
+            report = new ProjectReport(noFiles, noLines, noMethods, totalComplexity, ranked, duration);
+        }
+        logger.info("Project summary of " + report.getNoFiles() + " files and " + report.getNoLines()
+                + " lines computed in " + duration + " ms");
+    }
+
+    @Override
+    public void onSuccess() {
+        Messages.showInfoMessage(getProject(), report.toString(), "Project Summary Report");
+    }
+
+    public ProjectReport getReport() {
+        return report;
+    }
+
+    /**
+     * Computes the statistics of a file on its light syntax tree, without building its psi.
+     * @param file the Java file
+     * @param languageLevel the language level to parse with
+     */
+    private void addLightTree(VirtualFile file, LanguageLevel languageLevel) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        CharSequence text = document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+        add(file.getName(), LineCounter.countLines(text), LightMethodComplexity.computeComplexities(text, languageLevel));
+    }
+
+    /**
+     * Adds the statistics of a file to the project totals.
+     * @param fileStatistics the statistics of the file
+     */
+    private void add(FileStatistics fileStatistics) {
+        add(fileStatistics.getName(), fileStatistics.getLines(), fileStatistics.getMethods());
+    }
+
+    /**
+     * Adds the statistics of a file to the project totals.
+     * @param fileName the name of the file
+     * @param lines the number of lines of the file
+     * @param methods the statistics of the methods of the file, null if it has none
+     */
+    private synchronized void add(String fileName, int lines, List<MethodStatistics> methods) {
+        noFiles++;
+        noLines += lines;
+        if (methods == null) {
+            return;
+        }
+        for (MethodStatistics method : methods) {
+            noMethods++;
+            totalComplexity += method.getComplexity();
+            if (topMethods.size() < TOP_METHODS) {
+                topMethods.add(rank(fileName, method));
+            } else if (method.getComplexity() > topMethods.peek().getStatistics().getComplexity()) {
+                topMethods.poll();
+                topMethods.add(rank(fileName, method));
+            }
+        }
+    }
+
+    /**
+     * Ranks a copy of the statistics of a method, which does not reference the psi of the method.
+     */
+    private static RankedMethod rank(String fileName, MethodStatistics method) {
+        return new RankedMethod(fileName, new MethodStatistics(method.getName(), method.getComplexity()));
+    }
+}
@@ -0,0 +1,76 @@
+package service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which snapshots of the file statistics history are kept at full resolution.
+ * A snapshot is kept if it is one of the most recent ones of its file, or if it is recent enough;
+ * older snapshots are downsampled into daily or weekly aggregates.
+ * The history of a key which does not match any file anymore, such as the keys of deleted files
+ * or the file names used as keys before the project-relative paths, is dropped once it is not recent anymore.
+ */
+public class RetentionPolicy {
+
+    public static final int DEFAULT_RETAINED_SNAPSHOTS = 50;
+    public static final int DEFAULT_RETAINED_DAYS = 30;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    private final int retainedSnapshots;
+    private final long retainedPeriod;
+    private final long rollupPeriod;
+
+    /**
+     * Construct an instance of RetentionPolicy.
+     * @param retainedSnapshots number of most recent snapshots of each file kept at full resolution
+     * @param retainedDays number of days during which the snapshots are kept at full resolution
+     * @param weeklyRollups whether older snapshots are aggregated by week instead of by day
+     */
+    public RetentionPolicy(int retainedSnapshots, int retainedDays, boolean weeklyRollups) {
+        this.retainedSnapshots = retainedSnapshots;
+        this.retainedPeriod = retainedDays * DAY;
+        this.rollupPeriod = weeklyRollups ? WEEK : DAY;
+    }
+
+    /**
+     * Construct the policy configured in the plugin settings.
+     * @param settings the plugin settings
+     * @return the retention policy
+     */
+    public static RetentionPolicy fromSettings(PluginSettings settings) {
+        return new RetentionPolicy(settings.retainedSnapshots, settings.retainedDays, settings.weeklyRollups);
+    }
+
+    /**
+     * Checks whether a snapshot is kept at full resolution.
+     * @param timestamp the time the snapshot was taken
+     * @param newerSnapshots number of more recent snapshots of the same file
+     * @param now the current time
+     * @return true if the snapshot is kept, false if it is downsampled
+     */
+    public boolean retains(long timestamp, int newerSnapshots, long now) {
+        return newerSnapshots < retainedSnapshots || now - timestamp < retainedPeriod;
+    }
+
+    /**
+     * Checks whether the history of a key is kept.
+     * @param latestTimestamp the time of the latest snapshot of the key
+     * @param exists whether the key matches an existing file
+     * @param now the current time
+     * @return true if the history is kept, false if all its snapshots and aggregates are dropped
+     */
+    public boolean retainsKey(long latestTimestamp, boolean exists, long now) {
+        return exists || now - latestTimestamp < retainedPeriod;
+    }
+
+    /**
+     * Gets the start of the aggregation period containing a time, in UTC.
+     * Weeks are counted from the epoch.
+     * @param timestamp the time of a snapshot
+     * @return the start of its period
+     */
+    public long periodStart(long timestamp) {
+        return Math.floorDiv(timestamp, rollupPeriod) * rollupPeriod;
+    }
+}
@@ -0,0 +1,200 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory copy of the file statistics history, one primitive array per metric.
+ * Snapshots are stored in the order they were saved, and each one links to the
+ * previous snapshot of the same file, so the series of a file is read without
+ * scanning the others and window queries scan contiguous arrays.
+ * Not thread safe: the window queries reuse scratch buffers, the store synchronizes all the calls.
+ */
+public class StatisticsColumns {
+
+    /**
+     * The metrics a trend can be computed on.
+     */
+    public enum Metric {
+        COMPLEXITY, LINES, METHODS
+    }
+
+    /**
+     * The growth of a metric of a file during a time window.
+     */
+    public static class Growth {
+
+        private final String key;
+        private final float growth;
+
+        Growth(String key, float growth) {
+            this.key = key;
+            this.growth = growth;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public float getGrowth() {
+            return growth;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] keyIds = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private float[] complexities = new float[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] methods = new int[INITIAL_CAPACITY];
+
+    /**
+     * Index of the previous snapshot of the same file, -1 for the first one.
+     */
+    private int[] previous = new int[INITIAL_CAPACITY];
+
+    /**
+     * Index of the latest snapshot of each file by key id, -1 if there is none.
+     */
+    private int[] latest = newIndex(16);
+
+    /**
+     * Scratch buffers of topGrowth, indexed by key id, only ever grown.
+     */
+    private int[] firstInWindow = new int[0];
+    private int[] lastInWindow = new int[0];
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a snapshot, which must not be older than the snapshots already added.
+     */
+    void add(int keyId, long timestamp, float complexity, int noLines, int noMethods) {
+        if (size == keyIds.length) {
+            int capacity = size * 2;
+            keyIds = Arrays.copyOf(keyIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            complexities = Arrays.copyOf(complexities, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            methods = Arrays.copyOf(methods, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+        if (keyId >= latest.length) {
+            int[] index = newIndex(Math.max(keyId + 1, latest.length * 2));
+            System.arraycopy(latest, 0, index, 0, latest.length);
+            latest = index;
+        }
+        keyIds[size] = keyId;
+        timestamps[size] = timestamp;
+        complexities[size] = complexity;
+        lines[size] = noLines;
+        methods[size] = noMethods;
+        previous[size] = latest[keyId];
+        latest[keyId] = size;
+        size++;
+    }
+
+    /**
+     * Removes all the snapshots.
+     */
+    void clear() {
+        size = 0;
+        Arrays.fill(latest, -1);
+    }
+
+    /**
+     * Gets the snapshots of a file, oldest first.
+     * @param keyId the id of the key of the file
+     * @return the series of the file
+     */
+    StatisticsSeries series(int keyId) {
+        int count = 0;
+        int first = keyId >= 0 && keyId < latest.length ? latest[keyId] : -1;
+        for (int i = first; i >= 0; i = previous[i]) {
+            count++;
+        }
+        long[] seriesTimestamps = new long[count];
+        float[] seriesComplexities = new float[count];
+        int[] seriesLines = new int[count];
+        int[] seriesMethods = new int[count];
+        for (int i = first, j = count - 1; i >= 0; i = previous[i], j--) {
+            seriesTimestamps[j] = timestamps[i];
+            seriesComplexities[j] = complexities[i];
+            seriesLines[j] = lines[i];
+            seriesMethods[j] = methods[i];
+        }
+        return new StatisticsSeries(seriesTimestamps, seriesComplexities, seriesLines, seriesMethods);
+    }
+
+    /**
+     * Finds the files whose metric grew the most between their first and last snapshot of a window.
+     * @param metric the metric to compare
+     * @param from start of the window, inclusive
+     * @param to end of the window, inclusive
+     * @param limit maximum number of files returned
+     * @param keys the keys by id
+     * @return the files with the largest growth, largest first; files with a single snapshot in the window have none
+     */
+    List<Growth> topGrowth(Metric metric, long from, long to, int limit, List<String> keys) {
+        int noKeys = latest.length;
+        if (firstInWindow.length < noKeys) {
+            firstInWindow = new int[noKeys];
+            lastInWindow = new int[noKeys];
+        }
+        // lastInWindow is only read for the keys having a first snapshot in the window
+        Arrays.fill(firstInWindow, 0, noKeys, -1);
+        for (int i = 0; i < size; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp >= from && timestamp <= to) {
+                int keyId = keyIds[i];
+                if (firstInWindow[keyId] < 0) {
+                    firstInWindow[keyId] = i;
+                }
+                lastInWindow[keyId] = i;
+            }
+        }
+
+        Comparator<Growth> byGrowth = Comparator.comparingDouble(Growth::getGrowth);
+        PriorityQueue<Growth> top = new PriorityQueue<>(byGrowth);
+        for (int keyId = 0; keyId < noKeys; keyId++) {
+            if (firstInWindow[keyId] < 0 || firstInWindow[keyId] == lastInWindow[keyId]) {
+                continue;
+            }
+            float growth = value(metric, lastInWindow[keyId]) - value(metric, firstInWindow[keyId]);
+            if (top.size() < limit) {
+                top.add(new Growth(keys.get(keyId), growth));
+            } else if (limit > 0 && growth > top.peek().getGrowth()) {
+                top.poll();
+                top.add(new Growth(keys.get(keyId), growth));
+            }
+        }
+        List<Growth> result = new ArrayList<>(top);
+        result.sort(Collections.reverseOrder(byGrowth));
+        return result;
+    }
+
+    private float value(Metric metric, int index) {
+        switch (metric) {
+            case COMPLEXITY:
+                return complexities[index];
+            case LINES:
+                return lines[index];
+            default:
+                return methods[index];
+        }
+    }
+
+    private static int[] newIndex(int length) {
+        int[] index = new int[length];
+        Arrays.fill(index, -1);
+        return index;
+    }
+}
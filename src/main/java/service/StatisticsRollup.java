@@ -0,0 +1,113 @@
+package service;
+
+/**
+ * An immutable aggregate of the snapshots of a file taken during a day or a week,
+ * replacing them once they fall out of the retention policy.
+ */
+public class StatisticsRollup {
+
+    private final long periodStart;
+    private final int count;
+    private final float minComplexity;
+    private final float maxComplexity;
+    private final float averageComplexity;
+    private final int minLines;
+    private final int maxLines;
+    private final float averageLines;
+    private final int minMethods;
+    private final int maxMethods;
+    private final float averageMethods;
+
+    StatisticsRollup(long periodStart, int count,
+                     float minComplexity, float maxComplexity, float averageComplexity,
+                     int minLines, int maxLines, float averageLines,
+                     int minMethods, int maxMethods, float averageMethods) {
+        this.periodStart = periodStart;
+        this.count = count;
+        this.minComplexity = minComplexity;
+        this.maxComplexity = maxComplexity;
+        this.averageComplexity = averageComplexity;
+        this.minLines = minLines;
+        this.maxLines = maxLines;
+        this.averageLines = averageLines;
+        this.minMethods = minMethods;
+        this.maxMethods = maxMethods;
+        this.averageMethods = averageMethods;
+    }
+
+    /**
+     * Construct the aggregate of a single snapshot.
+     * @param periodStart start of the aggregation period
+     * @param complexity average complexity of the snapshot
+     * @param lines number of lines of the snapshot
+     * @param methods number of methods of the snapshot
+     * @return the aggregate
+     */
+    static StatisticsRollup of(long periodStart, float complexity, int lines, int methods) {
+        return new StatisticsRollup(periodStart, 1, complexity, complexity, complexity,
+                lines, lines, lines, methods, methods, methods);
+    }
+
+    /**
+     * Merges two aggregates of the same period.
+     * @param other the aggregate to merge with this one
+     * @return the merged aggregate
+     */
+    StatisticsRollup merge(StatisticsRollup other) {
+        int total = count + other.count;
+        return new StatisticsRollup(periodStart, total,
+                Math.min(minComplexity, other.minComplexity),
+                Math.max(maxComplexity, other.maxComplexity),
+                (averageComplexity * count + other.averageComplexity * other.count) / total,
+                Math.min(minLines, other.minLines),
+                Math.max(maxLines, other.maxLines),
+                (averageLines * count + other.averageLines * other.count) / total,
+                Math.min(minMethods, other.minMethods),
+                Math.max(maxMethods, other.maxMethods),
+                (averageMethods * count + other.averageMethods * other.count) / total);
+    }
+
+    public long getPeriodStart() {
+        return periodStart;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getMinComplexity() {
+        return minComplexity;
+    }
+
+    public float getMaxComplexity() {
+        return maxComplexity;
+    }
+
+    public float getAverageComplexity() {
+        return averageComplexity;
+    }
+
+    public int getMinLines() {
+        return minLines;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    public float getAverageLines() {
+        return averageLines;
+    }
+
+    public int getMinMethods() {
+        return minMethods;
+    }
+
+    public int getMaxMethods() {
+        return maxMethods;
+    }
+
+    public float getAverageMethods() {
+        return averageMethods;
+    }
+}
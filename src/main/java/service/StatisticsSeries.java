@@ -0,0 +1,44 @@
+package service;
+
+/**
+ * An immutable series of the snapshots of a file, oldest first.
+ */
+public class StatisticsSeries {
+
+    /**
+     * The series of a file without snapshots.
+     */
+    static final StatisticsSeries EMPTY = new StatisticsSeries(new long[0], new float[0], new int[0], new int[0]);
+
+    private final long[] timestamps;
+    private final float[] complexities;
+    private final int[] lines;
+    private final int[] methods;
+
+    StatisticsSeries(long[] timestamps, float[] complexities, int[] lines, int[] methods) {
+        this.timestamps = timestamps;
+        this.complexities = complexities;
+        this.lines = lines;
+        this.methods = methods;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getAverageComplexity(int index) {
+        return complexities[index];
+    }
+
+    public int getLines(int index) {
+        return lines[index];
+    }
+
+    public int getTotalMethods(int index) {
+        return methods[index];
+    }
+}
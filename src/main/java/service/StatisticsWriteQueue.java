@@ -0,0 +1,168 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import service.FileStatisticsStore.Snapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue of the snapshots saved to a FileStatisticsStore.
+ * Snapshots are appended in batches on a pooled thread once the flush delay elapsed
+ * after the first queued one, and the queue is flushed when its parent is disposed.
+ */
+public class StatisticsWriteQueue implements Disposable {
+
+    private final static Logger logger = Logger.getInstance(StatisticsWriteQueue.class);
+
+    /**
+     * Default delay in milliseconds between queueing a snapshot and flushing it.
+     */
+    public static final int DEFAULT_FLUSH_DELAY = 1000;
+
+    private final FileStatisticsStore store;
+    private final Alarm alarm;
+    private final int flushDelay;
+    private final Consumer<List<Snapshot>> flushed;
+
+    /**
+     * Held for the whole of a flush, from taking the batch to writing it.
+     */
+    private final Object flushLock = new Object();
+
+    // guarded by this
+    private List<Snapshot> queue = new ArrayList<>();
+    private final Map<String, Snapshot> pending = new HashMap<>();
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong lastFlushLatency = new AtomicLong();
+    private final AtomicLong maxFlushLatency = new AtomicLong();
+
+    /**
+     * Constructs an instance of StatisticsWriteQueue.
+     * @param parent disposable whose disposal flushes the queue
+     * @param store the store the snapshots are appended to
+     * @param flushDelay delay in milliseconds between queueing a snapshot and flushing it
+     * @param flushed called with each batch once it is written
+     */
+    public StatisticsWriteQueue(@NotNull Disposable parent, @NotNull FileStatisticsStore store, int flushDelay,
+                                @NotNull Consumer<List<Snapshot>> flushed) {
+        this.store = store;
+        this.flushDelay = flushDelay;
+        this.flushed = flushed;
+        // the alarm is a child of the queue, so it is disposed before the final flush
+        Disposer.register(parent, this);
+        this.alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    }
+
+    /**
+     * Queues a snapshot and schedules a flush if none is pending.
+     * @param snapshot the snapshot to save
+     */
+    public void add(@NotNull Snapshot snapshot) {
+        boolean schedule;
+        synchronized (this) {
+            schedule = queue.isEmpty();
+            queue.add(snapshot);
+            pending.put(snapshot.getKey(), snapshot);
+        }
+        if (schedule && !alarm.isDisposed()) {
+            alarm.addRequest(this::flush, flushDelay);
+        }
+    }
+
+    /**
+     * Gets the latest queued snapshot of a key which is not written yet.
+     * @param key the key of the file
+     * @return the snapshot, null if none is queued
+     */
+    @Nullable
+    public synchronized Snapshot getPending(@NotNull String key) {
+        return pending.get(key);
+    }
+
+    /**
+     * Writes the queued snapshots in a single batch.
+     * Flushes run one at a time, so batches are appended in the order they were queued.
+     * A batch which could not be written is queued again ahead of the newer snapshots and retried later.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Snapshot> batch;
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+            }
+
+            long start = System.nanoTime();
+            try {
+                store.appendAll(batch);
+            } catch (IOException e) {
+                logger.warn("Could not save " + batch.size() + " file statistics snapshots, retrying later", e);
+                synchronized (this) {
+                    batch.addAll(queue);
+                    queue = batch;
+                }
+                if (!alarm.isDisposed()) {
+                    alarm.addRequest(this::flush, flushDelay);
+                }
+                return;
+            }
+            long latency = (System.nanoTime() - start) / 1_000_000;
+            flushes.incrementAndGet();
+            lastFlushLatency.set(latency);
+            maxFlushLatency.accumulateAndGet(latency, Math::max);
+
+            // the snapshots stay visible as pending until the listener dropped what it cached
+            flushed.accept(batch);
+            synchronized (this) {
+                for (Snapshot snapshot : batch) {
+                    pending.remove(snapshot.getKey(), snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of snapshots waiting to be written.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Duration in milliseconds of the last flush.
+     */
+    public long getLastFlushLatency() {
+        return lastFlushLatency.get();
+    }
+
+    /**
+     * Longest duration in milliseconds of a flush.
+     */
+    public long getMaxFlushLatency() {
+        return maxFlushLatency.get();
+    }
+
+    @Override
+    public void dispose() {
+        flush();
+    }
+}
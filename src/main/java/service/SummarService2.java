@@ -16,11 +16,17 @@ import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.psi.*;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.Alarm;
 import com.intellij.util.messages.MessageBusConnection;
-import actions.DataAggregator;
+import data.MethodStatistics;
+import data.SummaryData;
+import view.DataAggregator;
+import view.DiagnosticsView;
+import view.JavaRecursiveMethodVisitor;
 import service.FileStatistics.FileStatisticsBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import util.LineCounter;
 import util.SummaryView;
 
 import java.util.ArrayList;
@@ -37,6 +43,18 @@ public class SummaryService {
     private ArrayList<SummaryData> lastSummary = new ArrayList<>();
     private Project project;
 
+    /**
+     * Batches the psi change events into a single update of the view.
+     */
+    private final ChangeCoalescer changeCoalescer;
+
+    /**
+     * Complexity of the methods visited so far, reused while they are unchanged.
+     */
+    private final MethodComplexityCache complexityCache = new MethodComplexityCache();
+
+    private final PluginMetrics metrics;
+
     /**
      * Class constructor
      * @param project current project
@@ -46,6 +64,7 @@ public class SummaryService {
 
         view = new SummaryView();
         this.project = project;
+        metrics = PluginMetrics.getInstance(project);
 
         ToolWindowManager toolWindowManager = ToolWindowManager.getInstance(project);
         ToolWindow toolWindow = toolWindowManager.registerToolWindow(
@@ -56,6 +75,11 @@ public class SummaryService {
         Content content = contentFactory.createContent(view, null, true);
         toolWindow.getContentManager().addContent(content);
 
+        // metrics of the plugin
+        Content diagnosticsContent = contentFactory.createContent(
+                new DiagnosticsView(project), "Plugin Diagnostics", false);
+        toolWindow.getContentManager().addContent(diagnosticsContent);
+
         // update view when new file is selected
         final MessageBusConnection connection = project.getMessageBus().connect(project);
         connection.subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
@@ -65,12 +89,30 @@ public class SummaryService {
             }
         });
 
+        // update view for the last changed file once the changes settle down
+        changeCoalescer = new ChangeCoalescer(project, Alarm.ThreadToUse.SWING_THREAD,
+                PluginSettings.getInstance().quietPeriod, changedFiles -> {
+            VirtualFile lastChanged = null;
+            for (VirtualFile changedFile : changedFiles) {
+                lastChanged = changedFile;
+            }
+            if (lastChanged != null && lastChanged.isValid()) {
+                updateView(project, lastChanged, false, true);
+                metrics.timer("java.eventToRender").recordSince(this.changeCoalescer.getBatchStart());
+            }
+        });
+
+        metrics.gauge("java.changes.events", changeCoalescer::getEventsReceived);
+        metrics.gauge("java.changes.recomputes", changeCoalescer::getRecomputesExecuted);
+        metrics.gauge("java.changes.pending", changeCoalescer::getPendingFiles);
+        metrics.hitRatio("java.complexity.cache", complexityCache::getHits, complexityCache::getMisses);
+
         // update view when file is changed
         PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeAnyChangeAbstractAdapter() {
             @Override
             protected void onChange(@Nullable PsiFile psiFile) {
                 if (psiFile instanceof PsiJavaFile) {
-                    updateView(psiFile.getProject(), psiFile.getVirtualFile(), false, true);
+                    changeCoalescer.fileChanged(psiFile.getVirtualFile());
                 }
             }
         });
@@ -95,11 +137,34 @@ public class SummaryService {
      * @return FileStatistics object
      */
     public FileStatistics buildFileStatistics(PsiFile psiFile, Boolean fileChanged) {
+        long start = System.nanoTime();
         FileStatisticsBuilder builder = this.buildWithCurrentData(psiFile);
+        metrics.timer("java.scan.file").recordSince(start);
         if (fileChanged) {
             return builder.build();
         }
-        return buildWithStorageData(builder, psiFile.getName()).build();
+        return buildWithStorageData(builder, psiFile).build();
+    }
+
+    /**
+     * Builds the FileStatistics object of a file which is not necessarily open in an editor,
+     * without storage data. The methods are visited without the complexity cache, so that the
+     * statistics of a whole project do not keep anything attached to the Psi of its files.
+     * Must be called inside a read action.
+     *
+     * @param psiFile file for which to collect statistics
+     * @return FileStatistics object
+     */
+    public FileStatistics buildProjectFileStatistics(PsiJavaFile psiFile) {
+        long start = System.nanoTime();
+        CharSequence text = psiFile.getViewProvider().getContents();
+        FileStatisticsBuilder builder = new FileStatisticsBuilder()
+                .addName(psiFile.getName())
+                .withLines(LineCounter.countLines(text))
+                .withFileLength(text.length());
+        FileStatistics fileStatistics = visitMethods(psiFile, builder, false).build();
+        metrics.timer("java.scan.file").recordSince(start);
+        return fileStatistics;
     }
 
     /**
@@ -122,7 +187,7 @@ public class SummaryService {
                 .withFileLength(document.getTextLength());
 
         // Execute data gathering logic.
-        return visitMethods(psiFile, builder);
+        return visitMethods(psiFile, builder, true);
     }
 
 
@@ -131,31 +196,34 @@ public class SummaryService {
      * This function adds to the FileStatistics object the aggregated statistics using disk data.
      *
      * @param builder FileStatisticsBuilder object on top of which to add the new storage statistics
-     * @param name name of the file for which to aggregate the data
+     * @param psiFile file for which to aggregate the data
      * @return a new FileStatisticsBuilder object containing the 'storage' statistics.
      */
-    private FileStatisticsBuilder buildWithStorageData(FileStatisticsBuilder builder, String name) {
-        DataAggregator dataAggregator = new DataAggregator(project, name);
+    private FileStatisticsBuilder buildWithStorageData(FileStatisticsBuilder builder, PsiFile psiFile) {
+        String key = FileStatisticsService.getInstance(project).getKey(psiFile);
+        DataAggregator dataAggregator = new DataAggregator(project, key);
         return dataAggregator.collectStorageData(builder);
     }
 
-    /*    *//**
+    /**
      * Saves the file statistics of a JAVA file on disk.
+     * Only Java files have a history: the statistics are built from the methods of the file,
+     * so other files are ignored.
      *
      * @param file file object for which to store the statistics on disk.
-     *//*
+     */
     public void save(VirtualFile file) {
-        final FileStatisticsService fileStatisticsService = FileStatisticsService.getInstance(this.project);
-        if (file != null) {
-            PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-            if (psiFile instanceof PsiJavaFile) {
-                fileStatisticsService.saveStatistics(this.buildFileStatistics(psiFile, false));
-            } else {
-                // TODO: Save statistics for other types of files
-            }
+        if (file == null) {
+            return;
         }
-
-    }*/
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (!(psiFile instanceof PsiJavaFile)) {
+            return;
+        }
+        FileStatisticsService fileStatisticsService = FileStatisticsService.getInstance(this.project);
+        fileStatisticsService.saveStatistics(fileStatisticsService.getKey(psiFile),
+                this.buildFileStatistics(psiFile, false));
+    }
 
     /**
      * Update the view.
@@ -191,6 +259,10 @@ public class SummaryService {
         }
     }
 
+    public ChangeCoalescer getChangeCoalescer() {
+        return changeCoalescer;
+    }
+
     public static SummaryService getInstance(@NotNull Project project) {
         return ServiceManager.getService(project, SummaryService.class);
     }
@@ -201,10 +273,45 @@ public class SummaryService {
      *
      * @param psiFile the Psi object representing the current file.
      * @param builder the builder for the statistics object to fill with data during scan.
+     * @param cached whether the complexities are read from the complexity cache
      */
-    private FileStatisticsBuilder visitMethods(PsiFile psiFile, FileStatisticsBuilder builder) {
+    private FileStatisticsBuilder visitMethods(PsiFile psiFile, FileStatisticsBuilder builder, boolean cached) {
 
+        if (psiFile instanceof PsiJavaFile) {
+            for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                addMethods(psiClass, builder, cached);
+            }
+        }
+        if (builder.getTotalMethods() > 0) {
+            builder.calculateAverageComplexity();
+        }
         return builder;
     }
+
+    /**
+     * Adds the statistics of the methods of a class and of its inner classes.
+     *
+     * @param psiClass the class whose methods to add.
+     * @param builder the builder for the statistics object.
+     * @param cached whether the complexities are read from the complexity cache
+     */
+    private void addMethods(PsiClass psiClass, FileStatisticsBuilder builder, boolean cached) {
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (cached) {
+                builder.addMethod(complexityCache.getStatistics(method));
+            } else {
+                MethodStatistics statistics = new MethodStatistics(method);
+                method.accept(new JavaRecursiveMethodVisitor(statistics));
+                builder.addMethod(statistics);
+            }
+        }
+        for (PsiClass innerClass : psiClass.getInnerClasses()) {
+            addMethods(innerClass, builder, cached);
+        }
+    }
+
+    public MethodComplexityCache getComplexityCache() {
+        return complexityCache;
+    }
 }
 
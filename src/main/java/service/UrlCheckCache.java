@@ -0,0 +1,103 @@
+package service;
+
+import com.intellij.openapi.components.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Results of the external URL checks, kept across restarts in markdownUrlCache.xml.
+ * Results older than the time to live passed by the caller are ignored, and results older than
+ * the time to live set by UrlChecker are dropped when the cache is saved.
+ */
+@State(name = "MarkdownUrlCache", storages = @Storage(value = "markdownUrlCache.xml", roamingType = RoamingType.DISABLED))
+public class UrlCheckCache implements PersistentStateComponent<UrlCheckCache.CacheState> {
+
+    /**
+     * The result of the check of a URL.
+     */
+    public static class Entry {
+        public boolean valid;
+        public long checkedAt;
+
+        public Entry() {}
+
+        Entry(boolean valid, long checkedAt) {
+            this.valid = valid;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    public static class CacheState {
+        public Map<String, Entry> entries = new HashMap<>();
+    }
+
+    // guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Time to live of the results when the cache is saved, in milliseconds.
+     */
+    private volatile long ttl = Long.MAX_VALUE;
+
+    /**
+     * Sets the time to live of the results kept when the cache is saved.
+     * @param ttl the time to live of the results in milliseconds
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets the result of a URL checked less than a time to live ago.
+     * @param url the URL
+     * @param ttl the time to live of the results in milliseconds
+     * @param now the current time
+     * @return whether the URL is valid, null if it was not checked recently
+     */
+    @Nullable
+    public synchronized Boolean get(@NotNull String url, long ttl, long now) {
+        Entry entry = entries.get(url);
+        if (entry == null || now - entry.checkedAt >= ttl) {
+            return null;
+        }
+        return entry.valid;
+    }
+
+    /**
+     * Records the result of a check.
+     * @param url the URL
+     * @param valid whether the URL is valid
+     * @param now the time of the check
+     */
+    public synchronized void put(@NotNull String url, boolean valid, long now) {
+        entries.put(url, new Entry(valid, now));
+    }
+
+    @Override
+    public synchronized CacheState getState() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().checkedAt >= ttl) {
+                iterator.remove();
+            }
+        }
+        CacheState state = new CacheState();
+        state.entries.putAll(entries);
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull CacheState state) {
+        entries.clear();
+        entries.putAll(state.entries);
+    }
+
+    public static UrlCheckCache getInstance() {
+        return ServiceManager.getService(UrlCheckCache.class);
+    }
+}
@@ -0,0 +1,236 @@
+package service;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Checks asynchronously whether external URLs answer, when enabled in the plugin settings.
+ * Each host gets at most a fixed number of concurrent requests, a HEAD request is tried first
+ * and a GET request when the server refuses it, and the statuses received are kept in the UrlCheckCache.
+ * A URL whose server could not be reached is unknown: it is reported valid and checked again next time.
+ * The scan never waits for a check: unknown URLs are reported valid, and the files linking to
+ * a URL found invalid are passed to the listener so they can be visited again.
+ */
+public class UrlChecker {
+
+    private final static Logger logger = Logger.getInstance(UrlChecker.class);
+
+    /**
+     * Sends a request and returns the status code of the response.
+     * Replaced to check against another server than the real hosts.
+     */
+    public interface Probe {
+        int request(@NotNull String url, @NotNull String method, int timeout) throws IOException;
+    }
+
+    /**
+     * Probe sending the requests through HttpURLConnection.
+     */
+    public static final Probe HTTP_PROBE = (url, method, timeout) -> {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setInstanceFollowRedirects(true);
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    };
+
+    private final UrlCheckCache cache;
+    private final Executor executor;
+    private final Probe probe;
+    private final int connectionsPerHost;
+    private final int timeout;
+    private final long ttl;
+
+    private final Map<String, Executor> hostExecutors = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Files waiting for the result of a URL.
+     */
+    private final Map<String, Set<VirtualFile>> waitingFiles = new ConcurrentHashMap<>();
+
+    @Nullable
+    private volatile Consumer<Collection<VirtualFile>> listener;
+
+    public UrlChecker(Project project) {
+        this(UrlCheckCache.getInstance(), AppExecutorUtil.getAppExecutorService(), HTTP_PROBE,
+                PluginSettings.getInstance().urlCheckConnectionsPerHost,
+                PluginSettings.getInstance().urlCheckTimeout,
+                TimeUnit.HOURS.toMillis(PluginSettings.getInstance().urlCheckTtlHours));
+    }
+
+    /**
+     * Constructs an instance of UrlChecker.
+     * @param cache the cache of the results
+     * @param executor the executor running the requests
+     * @param probe sends the requests
+     * @param connectionsPerHost maximum number of concurrent requests to the same host
+     * @param timeout connect and read timeout of a request in milliseconds
+     * @param ttl time during which a result is reused and kept in the cache, in milliseconds
+     */
+    public UrlChecker(@NotNull UrlCheckCache cache, @NotNull Executor executor, @NotNull Probe probe,
+                      int connectionsPerHost, int timeout, long ttl) {
+        this.cache = cache;
+        this.executor = executor;
+        this.probe = probe;
+        this.connectionsPerHost = connectionsPerHost;
+        this.timeout = timeout;
+        this.ttl = ttl;
+        cache.setTtl(ttl);
+    }
+
+    /**
+     * Sets the listener receiving the files that link to a URL found invalid.
+     * @param listener the listener
+     */
+    public void setListener(@Nullable Consumer<Collection<VirtualFile>> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the validity of a URL without waiting for it to be checked.
+     * @param url the URL
+     * @param linkingFile the file containing the URL, passed to the listener if the URL turns out invalid
+     * @return false if the URL was recently found invalid, true otherwise or if checking is disabled
+     */
+    public boolean isValid(@NotNull String url, @NotNull VirtualFile linkingFile) {
+        if (!PluginSettings.getInstance().checkUrls) {
+            return true;
+        }
+        Boolean cached = cache.get(url, ttl, System.currentTimeMillis());
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<VirtualFile> files = ContainerUtil.newConcurrentSet();
+        Set<VirtualFile> waiting = waitingFiles.putIfAbsent(url, files);
+        if (waiting != null) {
+            waiting.add(linkingFile);
+            if (waitingFiles.get(url) != waiting) {
+                // the check completed and notified its files before this one was added,
+                // its result is cached unless the server could not be reached
+                cached = cache.get(url, ttl, System.currentTimeMillis());
+                return cached == null || cached;
+            }
+            return true;
+        }
+        files.add(linkingFile);
+        check(url).whenComplete((valid, error) -> {
+            Set<VirtualFile> linkingFiles = waitingFiles.remove(url);
+            Consumer<Collection<VirtualFile>> currentListener = listener;
+            if (valid != null && !valid && linkingFiles != null && currentListener != null) {
+                currentListener.accept(linkingFiles);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Checks a URL, reusing a recent result or a check already running.
+     * URLs which are not http or https are valid, and so are URLs whose server could not be reached.
+     * @param url the URL
+     * @return a future completed with the validity of the URL, or exceptionally if the check failed
+     */
+    @NotNull
+    public CompletableFuture<Boolean> check(@NotNull String url) {
+        Boolean cached = cache.get(url, ttl, System.currentTimeMillis());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String host = getHttpHost(url);
+        if (host == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(url, result);
+        if (running != null) {
+            return running;
+        }
+        Executor hostExecutor = hostExecutors.computeIfAbsent(host, key ->
+                AppExecutorUtil.createBoundedApplicationPoolExecutor("UrlChecker " + key, executor, connectionsPerHost));
+        try {
+            hostExecutor.execute(() -> {
+                try {
+                    Boolean valid = request(url);
+                    if (valid != null) {
+                        cache.put(url, valid, System.currentTimeMillis());
+                    }
+                    inFlight.remove(url, result);
+                    result.complete(valid == null || valid);
+                } catch (Throwable e) {
+                    inFlight.remove(url, result);
+                    result.completeExceptionally(e);
+                    throw e;
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(url, result);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Requests a URL.
+     * @param url the URL
+     * @return whether the status of the response is a success, null if no response was received
+     */
+    @Nullable
+    private Boolean request(String url) {
+        try {
+            int status = probe.request(url, "HEAD", timeout);
+            // some servers do not implement or forbid HEAD requests
+            if (status >= 400 && status != HttpURLConnection.HTTP_NOT_FOUND && status != HttpURLConnection.HTTP_GONE) {
+                status = probe.request(url, "GET", timeout);
+            }
+            return status < 400;
+        } catch (IOException e) {
+            logger.debug("Could not check " + url, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String getHttpHost(String url) {
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme();
+            if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+                return null;
+            }
+            return uri.getHost() == null ? null : uri.getHost().toLowerCase();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    public static UrlChecker getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, UrlChecker.class);
+    }
+}
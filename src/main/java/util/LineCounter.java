@@ -0,0 +1,50 @@
+package util;
+
+/**
+ * Counts lines of a text without copying it or allocating per line.
+ */
+public final class LineCounter {
+
+    private LineCounter() {}
+
+    /**
+     * Counts the lines of a text the way {@code text.split("\r\n|\r|\n").length} does:
+     * "\r\n", "\r" and "\n" are line breaks, trailing line breaks do not start new lines
+     * and an empty text counts as one line.
+     * @param text the text to scan
+     * @return the number of lines
+     */
+    public static int countLines(CharSequence text) {
+        int length = text.length();
+        if (length == 0) {
+            return 1;
+        }
+
+        // trailing line breaks are ignored
+        int end = length;
+        while (end > 0 && isLineBreak(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            return 0;
+        }
+
+        int lines = 1;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                lines++;
+            } else if (c == '\r') {
+                lines++;
+                if (i + 1 < end && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
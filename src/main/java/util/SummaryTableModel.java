@@ -0,0 +1,77 @@
+package util;
+
+import data.SummaryData;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read-only table model of the summary view, backed by an array snapshot of the rows.
+ * The rows are replaced as a whole, but only the rows which changed are announced,
+ * so the table repaints only the visible rows among them.
+ */
+public class SummaryTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Name", "Value"};
+
+    private SummaryData[] rows = new SummaryData[0];
+
+    /**
+     * Replaces all the rows of the table, firing events for the changed, added and removed rows only.
+     * @param summaries the new rows
+     */
+    public void setRows(List<SummaryData> summaries) {
+        SummaryData[] oldRows = rows;
+        rows = summaries.toArray(new SummaryData[0]);
+
+        int common = Math.min(oldRows.length, rows.length);
+        int firstChanged = 0;
+        while (firstChanged < common && same(oldRows[firstChanged], rows[firstChanged])) {
+            firstChanged++;
+        }
+        int lastChanged = common - 1;
+        while (lastChanged > firstChanged && same(oldRows[lastChanged], rows[lastChanged])) {
+            lastChanged--;
+        }
+        if (firstChanged <= lastChanged) {
+            fireTableRowsUpdated(firstChanged, lastChanged);
+        }
+        if (rows.length > oldRows.length) {
+            fireTableRowsInserted(oldRows.length, rows.length - 1);
+        } else if (rows.length < oldRows.length) {
+            fireTableRowsDeleted(rows.length, oldRows.length - 1);
+        }
+    }
+
+    private static boolean same(SummaryData oldRow, SummaryData newRow) {
+        return Objects.equals(oldRow.getName(), newRow.getName())
+                && Objects.equals(oldRow.getValue(), newRow.getValue());
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        SummaryData summary = rows[row];
+        return column == 0 ? summary.getName() : summary.getValue();
+    }
+}
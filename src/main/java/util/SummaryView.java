@@ -2,14 +2,11 @@ package util;
 
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.table.JBTable;
-import SummaryData;
+import data.SummaryData;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Vector;
 
 /**
  * Class creating summary method plugin view
@@ -17,7 +14,7 @@ import java.util.Vector;
 public class SummaryView extends JPanel {
 
     private JBTable table;
-    private DefaultTableModel model;
+    private SummaryTableModel model;
 
     /**
      * Constructor of class
@@ -25,8 +22,10 @@ public class SummaryView extends JPanel {
     public SummaryView() {
         super();
         table = new JBTable();
-        model = new DefaultTableModel(new Vector(), new Vector(Arrays.asList(new String[] {"Name", "Value"})));
+        model = new SummaryTableModel();
         table.setModel(model);
+        // a single row height lets the table locate and paint only the visible rows
+        table.setRowHeight(table.getRowHeight());
         table.setCellSelectionEnabled(false);
         table.setColumnSelectionAllowed(false);
         table.setRowSelectionAllowed(false);
@@ -41,15 +40,6 @@ public class SummaryView extends JPanel {
      * @param summaries list including statistics
      */
     public void updateModel(List<SummaryData> summaries) {
-        int noOfRows = model.getRowCount();
-        for (int i = 0; i < noOfRows; i++) {
-            model.removeRow(0);
-        }
-        for (SummaryData summary : summaries) {
-            Vector row = new Vector();
-            row.add(summary.getName());
-            row.add(summary.getValue());
-            model.addRow(row);
-        }
+        model.setRows(summaries);
     }
 }
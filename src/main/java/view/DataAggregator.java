@@ -5,9 +5,6 @@ import com.intellij.openapi.project.Project;
 import service.FileStatistics.FileStatisticsBuilder;
 import service.FileStatisticsService;
 
-import java.util.List;
-import java.util.Map;
-
 /**
  * @author Tudor Popovici
  *
@@ -18,14 +15,15 @@ import java.util.Map;
 public class DataAggregator {
 
     private FileStatistics lastOccurrence;
-    private List<FileStatistics> fileStatisticsList;
     private FileStatisticsService fileStatisticsService;
 
-    public DataAggregator(Project project, String fileName) {
+    /**
+     * @param project the current project
+     * @param fileKey the key of the file in the statistics history, see FileStatisticsService#getKey.
+     */
+    public DataAggregator(Project project, String fileKey) {
         this.fileStatisticsService = FileStatisticsService.getInstance(project);
-        this.fileStatisticsList = this.getFileStatisticsList(fileName);
-        this.lastOccurrence = this.getLastOccurrence();
-        System.out.println("ok");
+        this.lastOccurrence = fileStatisticsService.getLastStatistics(fileKey);
     }
 
 
@@ -55,27 +53,6 @@ public class DataAggregator {
      * @return FileStatistics object containing the most recent previous statistics for a file.
      */
     private FileStatistics getLastOccurrence() {
-        if (this.fileStatisticsList != null) {
-            return this.fileStatisticsList.get(fileStatisticsList.size() - 1);
-        }
-        return null;
-    }
-
-    /**
-     * Retrieve the file statistics list from disk, given a file name.
-     *
-     * @param fileName file name to use for querying.
-     * @return  a list of FileStatistics objects.
-     */
-    private List<FileStatistics> getFileStatisticsList(String fileName) {
-
-        Map<String, List<FileStatistics>> fileStatisticsMap = fileStatisticsService.getFileStatisticsMap();
-
-        if (fileStatisticsMap != null) {
-            if (fileStatisticsMap.containsKey(fileName)) {
-                return fileStatisticsMap.get(fileName);
-            }
-        }
-        return null;
+        return this.lastOccurrence;
     }
 }
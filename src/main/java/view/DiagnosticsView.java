@@ -0,0 +1,91 @@
+package view;
+
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.util.Alarm;
+import service.PluginMetrics;
+import util.SummaryView;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Class creating the plugin diagnostics view.
+ * Shows the metrics of the plugin, refreshed every second while the view is visible,
+ * and lets them be copied or saved as JSON.
+ */
+public class DiagnosticsView extends JPanel {
+
+    /**
+     * Time in milliseconds between two refreshes of the view.
+     */
+    private static final int REFRESH_PERIOD = 1000;
+
+    private final PluginMetrics metrics;
+    private final SummaryView summaryView = new SummaryView();
+    private final Alarm refreshAlarm;
+
+    /**
+     * Constructor of class
+     * @param project current project, whose disposal stops the refreshes
+     */
+    public DiagnosticsView(Project project) {
+        super(new BorderLayout());
+        metrics = PluginMetrics.getInstance(project);
+        refreshAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, project);
+
+        JButton copyButton = new JButton("Copy JSON");
+        copyButton.addActionListener(event ->
+                CopyPasteManager.getInstance().setContents(new StringSelection(metrics.getJson())));
+        JButton exportButton = new JButton("Export JSON...");
+        exportButton.addActionListener(event -> export(project));
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(copyButton);
+        buttons.add(exportButton);
+        add(buttons, BorderLayout.NORTH);
+        add(summaryView, BorderLayout.CENTER);
+
+        refresh();
+    }
+
+    /**
+     * Updates the table and schedules the next refresh.
+     */
+    private void refresh() {
+        if (isShowing()) {
+            summaryView.updateModel(metrics.getSummary());
+        }
+        if (!refreshAlarm.isDisposed()) {
+            refreshAlarm.addRequest(this::refresh, REFRESH_PERIOD);
+        }
+    }
+
+    /**
+     * Saves the metrics as JSON to a file chosen by the user.
+     * @param project current project
+     */
+    private void export(Project project) {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor(
+                "Export Plugin Metrics", "Save the plugin metrics as JSON", "json");
+        VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project)
+                .save(null, "plugin-metrics.json");
+        if (target == null) {
+            return;
+        }
+        try {
+            Files.write(target.getFile().toPath(), metrics.getJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Messages.showErrorDialog(project, "Could not save the metrics: " + e.getMessage(),
+                    "Plugin Diagnostics");
+        }
+    }
+}
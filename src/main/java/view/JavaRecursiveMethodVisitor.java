@@ -2,35 +2,23 @@ package view;
 
 import com.intellij.psi.*;
 import com.intellij.psi.tree.TokenSet;
-import com.intellij.psi.util.PsiTreeUtil;
-import util.MethodStatistics;
+import data.MethodStatistics;
 
 /**
  * @author Tommaso Brandirali
  *
  * An implementation of JavaRecursiveElementWalkingVisitor to compute the cyclomatic complexity of a method.
  * The cyclomatic complexity is defined as (1 + [number of choice points]).
+ * Conditional statements are recognized through the visitor double dispatch of the Psi elements,
+ * so classifying a node costs a single virtual call.
  */
-public class JavaRecursiveMethodVisitor extends PsiRecursiveElementWalkingVisitor {
-
-    /**
-     * The list of classes to be considered as representing some form of conditional statement,
-     * in the context of computing the cyclomatic complexity.
-     */
-    private final Class[] CONDITIONAL_STATEMENTS = {
-        PsiIfStatement.class,
-        PsiForeachStatement.class,
-        PsiForStatement.class,
-        PsiWhileStatement.class,
-        PsiConditionalExpression.class,
-        PsiTryStatement.class
-    };
+public class JavaRecursiveMethodVisitor extends JavaRecursiveElementWalkingVisitor {
 
     /**
      * The set of operators implementing boolean logic which impact the cyclomatic complexity
      * if found in an if statement's condition.
      */
-    private final TokenSet BOOLEAN_OPERATIONS = TokenSet.create(
+    private static final TokenSet BOOLEAN_OPERATIONS = TokenSet.create(
             JavaTokenType.OR, JavaTokenType.AND,
             JavaTokenType.OROR, JavaTokenType.ANDAND);
 
@@ -49,49 +37,60 @@ public class JavaRecursiveMethodVisitor extends PsiRecursiveElementWalkingVisito
     }
 
     /**
-     * This method implements the logic to be executed on every node of the tree.
-     * Specifically, it increments the cyclomatic complexity in case the element is within
-     * the predefined set of conditional statements. Additionally, it increments the complexity
-     * in case logical operators (such as && and ||) are found in the condition of an if statement.
-     * @param element the node of the Psi tree currently being visited
+     * Increments the complexity for the if statement, and for each logical operator
+     * (such as && and ||) found in its condition.
+     * @param statement the if statement being visited
      */
     @Override
-    public void visitElement(PsiElement element) {
+    public void visitIfStatement(PsiIfStatement statement) {
+        myMethodStatistics.incrementComplexity();
+        countBooleanOperations(statement.getCondition());
+        super.visitIfStatement(statement);
+    }
 
-        // Increment complexity if element is a form of condition statement.
-        if (isInstanceOfConditional(element)) {
-            myMethodStatistics.incrementComplexity();
-        }
+    @Override
+    public void visitForeachStatement(PsiForeachStatement statement) {
+        myMethodStatistics.incrementComplexity();
+        super.visitForeachStatement(statement);
+    }
 
-        // Increment complexity for each logical operator found in if statement's condition.
-        if (element instanceof PsiIfStatement) {
-            PsiExpression condition = ((PsiIfStatement) element).getCondition();
-            PsiJavaToken[] binaryExpressionsWithinCondition = PsiTreeUtil.getChildrenOfType(
-                    condition, PsiJavaToken.class);
-            if (binaryExpressionsWithinCondition != null) {
-                for (PsiJavaToken binaryExpression : binaryExpressionsWithinCondition) {
-                    if (BOOLEAN_OPERATIONS.contains(binaryExpression.getTokenType())) {
-                        myMethodStatistics.incrementComplexity();
-                    }
-                }
-            }
-        }
+    @Override
+    public void visitForStatement(PsiForStatement statement) {
+        myMethodStatistics.incrementComplexity();
+        super.visitForStatement(statement);
+    }
 
-        // Continue walking...
-        super.visitElement(element);
+    @Override
+    public void visitWhileStatement(PsiWhileStatement statement) {
+        myMethodStatistics.incrementComplexity();
+        super.visitWhileStatement(statement);
+    }
+
+    @Override
+    public void visitConditionalExpression(PsiConditionalExpression expression) {
+        myMethodStatistics.incrementComplexity();
+        super.visitConditionalExpression(expression);
+    }
+
+    @Override
+    public void visitTryStatement(PsiTryStatement statement) {
+        myMethodStatistics.incrementComplexity();
+        super.visitTryStatement(statement);
     }
 
     /**
-     * Helper function to check whether an object is an instance of one of the classes
-     * considered to be conditional operators.
-     * @param element the element to be checked
-     * @return true if the element is an instance of a conditional operation, false otherwise.
+     * Helper function to increment the complexity for each boolean operator
+     * among the direct children of a condition.
+     * @param condition the condition of an if statement, null if missing
      */
-    private boolean isInstanceOfConditional(PsiElement element) {
-
-        for (Class c: CONDITIONAL_STATEMENTS) {
-            if (c.isInstance(element)) return true;
+    private void countBooleanOperations(PsiExpression condition) {
+        if (condition == null) {
+            return;
+        }
+        for (PsiElement child = condition.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof PsiJavaToken && BOOLEAN_OPERATIONS.contains(((PsiJavaToken) child).getTokenType())) {
+                myMethodStatistics.incrementComplexity();
+            }
         }
-        return false;
     }
 }
@@ -0,0 +1,117 @@
+package view;
+
+import com.intellij.lang.*;
+import com.intellij.lang.java.JavaParserDefinition;
+import com.intellij.lang.java.parser.JavaParser;
+import com.intellij.lang.java.parser.JavaParserUtil;
+import com.intellij.openapi.util.Ref;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.impl.java.stubs.JavaStubElementTypes;
+import com.intellij.psi.impl.source.tree.JavaElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.util.diff.FlyweightCapableTreeStructure;
+import data.MethodStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An alternative to JavaRecursiveMethodVisitor computing the cyclomatic complexity of the methods of a file
+ * on the light syntax tree produced by the parser, without creating any AST or Psi node.
+ * Each method starts at 1 and is incremented for every branch (if, for, foreach, while, do-while
+ * and conditional expression), every && or || operator at any nesting depth, every case label
+ * and every catch clause. Methods of nested or anonymous classes are counted on their own.
+ */
+public final class LightMethodComplexity {
+
+    private static final TokenSet BRANCHES = TokenSet.create(
+            JavaElementType.IF_STATEMENT,
+            JavaElementType.FOR_STATEMENT,
+            JavaElementType.FOREACH_STATEMENT,
+            JavaElementType.WHILE_STATEMENT,
+            JavaElementType.DO_WHILE_STATEMENT,
+            JavaElementType.CONDITIONAL_EXPRESSION,
+            JavaElementType.CATCH_SECTION);
+
+    private static final TokenSet BOOLEAN_OPERATIONS = TokenSet.create(
+            JavaTokenType.ANDAND, JavaTokenType.OROR);
+
+    private static final TokenSet SWITCH_LABELS = TokenSet.create(
+            JavaElementType.SWITCH_LABEL_STATEMENT, JavaElementType.SWITCH_LABELED_RULE);
+
+    private LightMethodComplexity() {}
+
+    /**
+     * Parses a Java source into a light tree and computes the complexity of its methods.
+     * @param text the text of the Java file
+     * @param languageLevel the language level to parse with
+     * @return the statistics of the methods, in source order
+     */
+    public static List<MethodStatistics> computeComplexities(CharSequence text, LanguageLevel languageLevel) {
+        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(
+                new JavaParserDefinition(), JavaParserDefinition.createLexer(languageLevel), text);
+        JavaParserUtil.setLanguageLevel(builder, languageLevel);
+        PsiBuilder.Marker root = builder.mark();
+        JavaParser.INSTANCE.getFileParser().parse(builder);
+        root.done(JavaStubElementTypes.JAVA_FILE);
+        return computeComplexities(builder.getLightTree());
+    }
+
+    /**
+     * Computes the complexity of the methods of a light tree.
+     * Lazy code blocks are expanded by the tree structure as they are reached.
+     * @param tree the light tree of a Java file
+     * @return the statistics of the methods, in source order
+     */
+    public static List<MethodStatistics> computeComplexities(FlyweightCapableTreeStructure<LighterASTNode> tree) {
+        List<MethodStatistics> methods = new ArrayList<>();
+        visit(tree, tree.getRoot(), null, methods);
+        return methods;
+    }
+
+    /**
+     * Visits a node and its subtree. The children of a node are only disposed once their
+     * subtrees have been visited, as the tree structure reuses the disposed nodes.
+     * @param tree the light tree
+     * @param node the node to visit
+     * @param owner the statistics of the method containing the node, null outside of methods
+     * @param methods collects the statistics of the methods
+     */
+    private static void visit(FlyweightCapableTreeStructure<LighterASTNode> tree, LighterASTNode node,
+                              MethodStatistics owner, List<MethodStatistics> methods) {
+        IElementType type = node.getTokenType();
+        if (type == JavaElementType.METHOD) {
+            owner = new MethodStatistics(methodName(tree, node), 1);
+            methods.add(owner);
+        } else if (owner != null && isChoicePoint(tree, node, type)) {
+            owner.incrementComplexity();
+        }
+
+        Ref<LighterASTNode[]> children = Ref.create();
+        int count = tree.getChildren(node, children);
+        LighterASTNode[] array = children.get();
+        try {
+            for (int i = 0; i < count; i++) {
+                visit(tree, array[i], owner, methods);
+            }
+        } finally {
+            tree.disposeChildren(array, count);
+        }
+    }
+
+    private static boolean isChoicePoint(FlyweightCapableTreeStructure<LighterASTNode> tree,
+                                         LighterASTNode node, IElementType type) {
+        if (BRANCHES.contains(type) || BOOLEAN_OPERATIONS.contains(type)) {
+            return true;
+        }
+        return SWITCH_LABELS.contains(type)
+                && LightTreeUtil.firstChildOfType(tree, node, JavaTokenType.CASE_KEYWORD) != null;
+    }
+
+    private static String methodName(FlyweightCapableTreeStructure<LighterASTNode> tree, LighterASTNode method) {
+        LighterASTNode identifier = LightTreeUtil.firstChildOfType(tree, method, JavaTokenType.IDENTIFIER);
+        return identifier == null ? "" : LightTreeUtil.toFilteredString(tree, identifier, null);
+    }
+}
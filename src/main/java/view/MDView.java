@@ -2,60 +2,313 @@ package view;
 
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.treeStructure.Tree;
-import util.LinkStatistics;
+import actions.FileLinks;
+
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Class creating MD method plugin view
+ * Class creating MD method plugin view.
+ * Files are shown in the hierarchy of their directories relative to the project directory,
+ * files outside of it are grouped by their absolute directory at the top level.
+ * The nodes of the links of a file are only created once the file is expanded.
+ * Updates are applied as per-file differences, and the links of an expanded file are
+ * updated in place so that the expanded nodes stay expanded.
  */
 public class MDView extends JPanel {
 
+    /**
+     * Node of a file, holding its links until they are shown.
+     */
+    private static class FileNode extends DefaultMutableTreeNode {
+
+        private FileLinks links;
+        private boolean loaded;
+
+        FileNode(String fileName, FileLinks links) {
+            super(fileName);
+            this.links = links;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return false;
+        }
+
+        /**
+         * Creates the nodes of the links.
+         */
+        void load() {
+            DefaultMutableTreeNode urlLinks = new DefaultMutableTreeNode("URL Links");
+            DefaultMutableTreeNode references = new DefaultMutableTreeNode("References");
+            for (String label : labels(links, true)) {
+                urlLinks.add(new DefaultMutableTreeNode(label));
+            }
+            for (String label : labels(links, false)) {
+                references.add(new DefaultMutableTreeNode(label));
+            }
+            add(urlLinks);
+            add(references);
+            loaded = true;
+        }
+
+        /**
+         * The labels of the URLs or of the references of a file, in order.
+         */
+        static List<String> labels(FileLinks links, boolean urls) {
+            List<String> labels = new ArrayList<>();
+            for (int i = 0; i < links.size(); i++) {
+                if (links.isUrl(i) == urls) {
+                    labels.add(links.getLink(i) + " --- This link is " + links.validityToString(i));
+                }
+            }
+            return labels;
+        }
+    }
+
+    /**
+     * Node of a directory.
+     */
+    private static class DirectoryNode extends DefaultMutableTreeNode {
+
+        /**
+         * Absolute path of the directory.
+         */
+        private final String path;
+
+        DirectoryNode(String name, String path) {
+            super(name);
+            this.path = path;
+        }
+    }
+
     Tree tree;
+    private final DefaultTreeModel model;
+    private final DefaultMutableTreeNode root;
+
+    /**
+     * Directory of the project, null if it has none.
+     */
+    @Nullable
+    private final String basePath;
+
+    /**
+     * Shown files and directories by absolute path.
+     */
+    private final Map<String, FileNode> fileNodes = new HashMap<>();
+    private final Map<String, DirectoryNode> directoryNodes = new HashMap<>();
 
     /**
      * Constructor of class
+     * @param basePath directory of the project, the root of the shown hierarchy
      */
-    public MDView() {
+    public MDView(@Nullable String basePath) {
         super(new BorderLayout());
-        DefaultMutableTreeNode mdFiles = new DefaultMutableTreeNode("Markdown Files");
-        tree = new Tree(new DefaultTreeModel(mdFiles));
+        this.basePath = basePath;
+        root = new DefaultMutableTreeNode("Markdown Files");
+        model = new DefaultTreeModel(root);
+        tree = new Tree(model);
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                Object node = event.getPath().getLastPathComponent();
+                if (node instanceof FileNode && !((FileNode) node).loaded) {
+                    ((FileNode) node).load();
+                    model.nodesWereInserted((FileNode) node, new int[] {0, 1});
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {}
+        });
         JBScrollPane scrollPane = new JBScrollPane(tree);
         setLayout(new BorderLayout());
         add(scrollPane, BorderLayout.CENTER);
     }
 
     /**
-     * Updating tree view
-     * @param files map including file names and their references and links
+     * Updating tree view, only the files added, removed or changed since the last update fire events.
+     * @param files map including file paths and their references and links
      */
-    public void updateModel(Map<String, List<List<LinkStatistics>>> files) {
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode) tree.getModel().getRoot();
-        root.removeAllChildren();
-        for (String fileName : files.keySet()){
-            DefaultMutableTreeNode file = new DefaultMutableTreeNode(fileName);
-            DefaultMutableTreeNode urlLinks = new DefaultMutableTreeNode("URL Links");
-            DefaultMutableTreeNode references = new DefaultMutableTreeNode("References");
-            List<List<LinkStatistics>> list = files.get(fileName);
-            List<LinkStatistics> urlList = list.get(0);
-            List<LinkStatistics> refList = list.get(1);
-            for (LinkStatistics urlLink : urlList) {
-                DefaultMutableTreeNode newUrl = new DefaultMutableTreeNode(urlLink.getLink() + " --- This link is " + urlLink.validityToString());
-                urlLinks.add(newUrl);
+    public void updateModel(Map<String, FileLinks> files) {
+        boolean wasEmpty = fileNodes.isEmpty();
+
+        Iterator<Map.Entry<String, FileNode>> iterator = fileNodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, FileNode> entry = iterator.next();
+            if (!files.containsKey(entry.getKey())) {
+                removeFile(entry.getValue(), !wasEmpty);
+                iterator.remove();
+            }
+        }
+
+        for (Map.Entry<String, FileLinks> entry : files.entrySet()) {
+            String path = entry.getKey();
+            FileNode fileNode = fileNodes.get(path);
+            if (fileNode == null) {
+                fileNodes.put(path, addFile(path, entry.getValue(), !wasEmpty));
+            } else if (fileNode.links != entry.getValue()) {
+                // unchanged files keep the same links instance
+                fileNode.links = entry.getValue();
+                if (fileNode.loaded) {
+                    updateLinks((DefaultMutableTreeNode) fileNode.getChildAt(0),
+                            FileNode.labels(fileNode.links, true));
+                    updateLinks((DefaultMutableTreeNode) fileNode.getChildAt(1),
+                            FileNode.labels(fileNode.links, false));
+                }
             }
-            for (LinkStatistics refLink : refList) {
-                DefaultMutableTreeNode newUrl = new DefaultMutableTreeNode(refLink.getLink() + " --- This link is " + refLink.validityToString());
-                references.add(newUrl);
+        }
+
+        // the first update builds the whole tree at once
+        if (wasEmpty) {
+            model.reload();
+        }
+    }
+
+    private FileNode addFile(String path, FileLinks links, boolean fireEvents) {
+        int separator = path.lastIndexOf('/');
+        DefaultMutableTreeNode directoryNode = directory(separator < 0 ? "" : path.substring(0, separator), fireEvents);
+        FileNode fileNode = new FileNode(path.substring(separator + 1), links);
+        insertSorted(directoryNode, fileNode, fireEvents);
+        return fileNode;
+    }
+
+    /**
+     * Gets the node of a directory, creating it and its parents if needed.
+     * @param path absolute path of the directory
+     */
+    private DefaultMutableTreeNode directory(String path, boolean fireEvents) {
+        if (path.equals(basePath)) {
+            return root;
+        }
+        DirectoryNode directoryNode = directoryNodes.get(path);
+        if (directoryNode != null) {
+            return directoryNode;
+        }
+        DefaultMutableTreeNode parent;
+        String name;
+        if (basePath != null && path.startsWith(basePath + "/")) {
+            int separator = path.lastIndexOf('/');
+            parent = directory(path.substring(0, separator), fireEvents);
+            name = path.substring(separator + 1);
+        } else {
+            parent = root;
+            name = path;
+        }
+        directoryNode = new DirectoryNode(name, path);
+        directoryNodes.put(path, directoryNode);
+        insertSorted(parent, directoryNode, fireEvents);
+        return directoryNode;
+    }
+
+    private void removeFile(FileNode fileNode, boolean fireEvents) {
+        DefaultMutableTreeNode parent = (DefaultMutableTreeNode) fileNode.getParent();
+        remove(parent, fileNode, fireEvents);
+        // removes the directories left empty
+        while (parent instanceof DirectoryNode && parent.getChildCount() == 0) {
+            DefaultMutableTreeNode grandParent = (DefaultMutableTreeNode) parent.getParent();
+            directoryNodes.remove(((DirectoryNode) parent).path);
+            remove(grandParent, parent, fireEvents);
+            parent = grandParent;
+        }
+    }
+
+    /**
+     * Updates the link nodes of a group of an expanded file in place: the common first and last links
+     * are kept, the links between them are changed, then the extra ones are removed or inserted.
+     * @param group the URL Links or References node
+     * @param labels the new labels of the links of the group
+     */
+    private void updateLinks(DefaultMutableTreeNode group, List<String> labels) {
+        int oldCount = group.getChildCount();
+        int newCount = labels.size();
+        int common = Math.min(oldCount, newCount);
+        int prefix = 0;
+        while (prefix < common && label(group, prefix).equals(labels.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix
+                && label(group, oldCount - 1 - suffix).equals(labels.get(newCount - 1 - suffix))) {
+            suffix++;
+        }
+
+        int oldMiddle = oldCount - prefix - suffix;
+        int newMiddle = newCount - prefix - suffix;
+        int changed = Math.min(oldMiddle, newMiddle);
+        if (changed > 0) {
+            int[] indices = new int[changed];
+            for (int i = 0; i < changed; i++) {
+                indices[i] = prefix + i;
+                ((DefaultMutableTreeNode) group.getChildAt(prefix + i)).setUserObject(labels.get(prefix + i));
+            }
+            model.nodesChanged(group, indices);
+        }
+        if (oldMiddle > changed) {
+            int removed = oldMiddle - changed;
+            int[] indices = new int[removed];
+            Object[] nodes = new Object[removed];
+            for (int i = 0; i < removed; i++) {
+                indices[i] = prefix + changed + i;
+                nodes[i] = group.getChildAt(prefix + changed + i);
             }
-            file.add(urlLinks);
-            file.add(references);
-            root.add(file);
+            for (int i = removed - 1; i >= 0; i--) {
+                group.remove(indices[i]);
+            }
+            model.nodesWereRemoved(group, indices, nodes);
+        } else if (newMiddle > changed) {
+            int inserted = newMiddle - changed;
+            int[] indices = new int[inserted];
+            for (int i = 0; i < inserted; i++) {
+                indices[i] = prefix + changed + i;
+                group.insert(new DefaultMutableTreeNode(labels.get(indices[i])), indices[i]);
+            }
+            model.nodesWereInserted(group, indices);
+        }
+    }
+
+    private static String label(DefaultMutableTreeNode group, int index) {
+        return ((DefaultMutableTreeNode) group.getChildAt(index)).getUserObject().toString();
+    }
+
+    /**
+     * Inserts a node among its siblings sorted by name.
+     */
+    private void insertSorted(DefaultMutableTreeNode parent, DefaultMutableTreeNode child, boolean fireEvent) {
+        String name = child.getUserObject().toString();
+        int low = 0;
+        int high = parent.getChildCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            String sibling = ((DefaultMutableTreeNode) parent.getChildAt(middle)).getUserObject().toString();
+            if (sibling.compareTo(name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        parent.insert(child, low);
+        if (fireEvent) {
+            model.nodesWereInserted(parent, new int[] {low});
+        }
+    }
+
+    private void remove(DefaultMutableTreeNode parent, DefaultMutableTreeNode child, boolean fireEvent) {
+        int index = parent.getIndex(child);
+        parent.remove(index);
+        if (fireEvent) {
+            model.nodesWereRemoved(parent, new int[] {index}, new Object[] {child});
         }
-        ((DefaultTreeModel)tree.getModel()).reload();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package view;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+import service.ProjectStatisticsTask;
+
+/**
+ * An action that displays the statistics of the methods of every Java file in the project.
+ */
+public class ProjectMethodAction extends AnAction {
+
+    /**
+     * This method starts the analysis in the background, the results are displayed once it is done.
+     * @param event the event object
+     */
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+
+        // Get project, return warning message if no project open.
+        Project currentProject = event.getProject();
+        if (currentProject == null) {
+            Messages.showErrorDialog(
+                    "Please open a project to see the Project Summary Report.",
+                    "Project Summary Report");
+            return;
+        }
+
+        ProgressManager.getInstance().run(new ProjectStatisticsTask(currentProject));
+    }
+
+    /**
+     * This method sets the visibility of the action.
+     * @param e the event object
+     */
+    @Override
+    public void update(AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabledAndVisible(project != null);
+    }
+}
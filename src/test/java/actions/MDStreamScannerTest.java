@@ -0,0 +1,70 @@
+package actions;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.intellij.util.text.CharSequenceReader;
+
+import java.io.IOException;
+
+/**
+ * Checks that the streaming scanner extracts the same data as the psi tree scanner.
+ */
+public class MDStreamScannerTest extends LightPlatformCodeInsightFixtureTestCase {
+
+    /**
+     * Mixes the constructs the streaming scanner must handle like the psi scanner:
+     * headers, code spans and blocks, inline links and images, autolinks, bare URLs and reference definitions.
+     */
+    private static final String CONFORMANCE_DOCUMENT = "# Title\n"
+            + "###### Sixth level\n"
+            + "#Not a header\n"
+            + "\n"
+            + "Text with [a link](docs/a.md) and [a site](https://example.com/a) on one line.\n"
+            + "An image ![logo](images/logo.png \"Logo\") and a titled [link](b.md 'B').\n"
+            + "An autolink <https://example.org/x> and a mail <someone@example.com>.\n"
+            + "A bare URL https://example.net/path, then www.example.com.\n"
+            + "A link with a URL as text [https://example.com/text](c.md).\n"
+            + "Code `[not](a-link.md)` and escaped \\[not](either.md).\n"
+            + "A reference [link][ref] and a shortcut [ref].\n"
+            + "\n"
+            + "[ref]: docs/ref.md\n"
+            + "[site]: https://example.com/ref\n"
+            + "\n"
+            + "```\n"
+            + "# Not a header\n"
+            + "[not](a-link.md) https://example.com/code\n"
+            + "```\n"
+            + "\n"
+            + "    # indented code\n"
+            + "    [not](a-link.md)\n"
+            + "\n"
+            + "## Last header\n";
+
+    public void testConformanceDocument() throws IOException {
+        assertSameData("conformance.md", CONFORMANCE_DOCUMENT);
+    }
+
+    public void testDocumentSpanningSeveralChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 4 * MDStreamScanner.CHUNK_SIZE; i++) {
+            text.append("# Section ").append(i).append('\n')
+                    .append('\n')
+                    .append("See [the guide](docs/guide").append(i % 10).append(".md) for details.\n")
+                    .append("More at [the site](https://example.com/").append(i).append(").\n")
+                    .append("<https://example.org/").append(i).append(">\n")
+                    .append('\n');
+        }
+        assertSameData("sections.md", text.toString());
+    }
+
+    private void assertSameData(String fileName, String text) throws IOException {
+        PsiFile psiFile = myFixture.configureByText(fileName, text);
+        MDFileData psiData = MDFileScanner.scan(psiFile);
+        MDFileData streamData = MDStreamScanner.scan(new CharSequenceReader(psiFile.getViewProvider().getContents()));
+        assertEquals(psiData.getNoLines(), streamData.getNoLines());
+        assertEquals(psiData.getNoHeaders(), streamData.getNoHeaders());
+        assertEquals(psiData.getUrls(), streamData.getUrls());
+        assertEquals(psiData.getRepoReferences(), streamData.getRepoReferences());
+        assertEquals(psiData, streamData);
+    }
+}
@@ -0,0 +1,79 @@
+package service;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that LatestStatisticsCache never keeps a record read before a flush completed.
+ */
+public class LatestStatisticsCacheTest {
+
+    private final LatestStatisticsCache cache = new LatestStatisticsCache(16);
+    private final FileStatistics older = new FileStatistics();
+    private final FileStatistics flushed = new FileStatistics();
+
+    @Test
+    public void cachesWhatItRead() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        LatestStatisticsCache.Reader reader = key -> {
+            reads.incrementAndGet();
+            return older;
+        };
+
+        assertSame(older, cache.get("a.java", reader));
+        assertSame(older, cache.get("a.java", reader));
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void flushInvalidatesItsKeys() throws Exception {
+        assertSame(older, cache.get("a.java", key -> older));
+        cache.flushed(Collections.singletonList("a.java"));
+
+        assertSame(flushed, cache.get("a.java", key -> flushed));
+    }
+
+    @Test
+    public void readInterleavedWithFlushIsNotCached() throws Exception {
+        // the flush of a newer snapshot completes while the lookup reads the older record
+        assertSame(older, cache.get("a.java", key -> {
+            cache.flushed(Collections.singletonList(key));
+            return older;
+        }));
+
+        assertSame(flushed, cache.get("a.java", key -> flushed));
+    }
+
+    @Test
+    public void readInterleavedWithFlushOnAnotherThread() throws Exception {
+        Thread flush = new Thread(() -> cache.flushed(Collections.singletonList("a.java")));
+        assertSame(older, cache.get("a.java", key -> {
+            flush.start();
+            try {
+                flush.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return older;
+        }));
+
+        assertSame(flushed, cache.get("a.java", key -> flushed));
+    }
+
+    @Test
+    public void missingStatisticsAreCached() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        LatestStatisticsCache.Reader reader = key -> {
+            reads.incrementAndGet();
+            return null;
+        };
+
+        assertNull(cache.get("a.java", reader));
+        assertNull(cache.get("a.java", reader));
+        assertEquals(1, reads.get());
+    }
+}
@@ -0,0 +1,177 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks UrlChecker against a local HTTP server whose contexts answer with fixed statuses.
+ */
+public class UrlCheckerTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private UrlCheckCache cache;
+
+    /**
+     * Requests received by the server, as "METHOD path".
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        cache = new UrlCheckCache();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fallsBackToGetWhenHeadIsRefused() throws Exception {
+        respond("/no-head", exchange -> "HEAD".equals(exchange.getRequestMethod()) ? 405 : 200);
+
+        assertTrue(checker(4, HOUR).check(url("/no-head")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+        assertEquals("HEAD /no-head", requests.get(0));
+        assertEquals("GET /no-head", requests.get(1));
+    }
+
+    @Test
+    public void missingPagesAreInvalidWithoutGet() throws Exception {
+        respond("/missing", exchange -> 404);
+        respond("/gone", exchange -> 410);
+        UrlChecker checker = checker(4, HOUR);
+
+        assertFalse(checker.check(url("/missing")).get(5, TimeUnit.SECONDS));
+        assertFalse(checker.check(url("/gone")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+        assertEquals(Boolean.FALSE, cache.get(url("/missing"), HOUR, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerHost() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        respond("/slow", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return 200;
+        });
+        UrlChecker checker = checker(2, HOUR);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(checker.check(url("/slow/" + i)));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(6, requests.size());
+        assertTrue("at most 2 concurrent requests, got " + maxRunning.get(), maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void reusesResultsUntilTheyExpire() throws Exception {
+        respond("/page", exchange -> 200);
+
+        assertTrue(checker(4, HOUR).check(url("/page")).get(5, TimeUnit.SECONDS));
+        assertTrue(checker(4, HOUR).check(url("/page")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+
+        assertTrue(checker(4, 0).check(url("/page")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void savesOnlyTheResultsWithinTheTtlOfTheChecker() throws Exception {
+        long now = System.currentTimeMillis();
+        cache.put("http://example.invalid/recent", true, now);
+        cache.put("http://example.invalid/old", true, now - 2 * HOUR);
+        checker(4, HOUR);
+
+        // a lookup with another time to live does not change what is saved
+        assertNotNull(cache.get("http://example.invalid/old", 3 * HOUR, now));
+        UrlCheckCache.CacheState state = cache.getState();
+        assertTrue(state.entries.containsKey("http://example.invalid/recent"));
+        assertFalse(state.entries.containsKey("http://example.invalid/old"));
+    }
+
+    @Test
+    public void unreachableServersAreNotCached() throws Exception {
+        UrlChecker checker = new UrlChecker(cache, executor, (url, method, timeout) -> {
+            throw new IOException("connection refused");
+        }, 4, 1000, HOUR);
+
+        assertTrue(checker.check("http://unreachable.invalid/").get(5, TimeUnit.SECONDS));
+        assertNull(cache.get("http://unreachable.invalid/", HOUR, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void failedChecksCompleteExceptionallyAndAreRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        UrlChecker checker = new UrlChecker(cache, executor, (url, method, timeout) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("probe failure");
+            }
+            return 200;
+        }, 4, 1000, HOUR);
+
+        try {
+            checker.check("http://example.invalid/").get(5, TimeUnit.SECONDS);
+            fail("the check should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(checker.check("http://example.invalid/").get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    private UrlChecker checker(int connectionsPerHost, long ttl) {
+        return new UrlChecker(cache, executor, UrlChecker.HTTP_PROBE, connectionsPerHost, 5000, ttl);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private interface Status {
+        int of(HttpExchange exchange);
+    }
+
+    /**
+     * Answers the requests to a path, and the paths below it, with an empty response.
+     */
+    private void respond(String path, Status status) {
+        server.createContext(path, exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+            exchange.sendResponseHeaders(status.of(exchange), -1);
+            exchange.close();
+        });
+    }
+}